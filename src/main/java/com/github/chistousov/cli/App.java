@@ -1,5 +1,7 @@
 package com.github.chistousov.cli;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -7,6 +9,7 @@ import com.github.chistousov.lib.TypeSideCommunication;
 import com.github.chistousov.lib.exceptions.CreateInstanseException;
 import com.github.chistousov.lib.tcp.TCP;
 import com.github.chistousov.lib.tcp.TCPBuilder;
+import com.github.chistousov.lib.tcp.scenario.ScenarioCompiler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +18,11 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Entry point for launching the test server-analyzer(Точка входа для запуска тестового сервера-анализатора).
  * </p>
+ * <p>
+ * {@code compile <scenario> <image>} compiles a scenario (UTF-8) into an image
+ * instead, -DscenarioImage=/path/to/image starts the server from it
+ * (компилирует сценарий в образ, -DscenarioImage запускает сервер из него).
+ * </p>
  *
  * @author Nikita Chistousov (chistousov.nik@yandex.ru)
  * @since 8
@@ -25,21 +33,28 @@ public class App {
 
     private static Object obj = new Object();
 
-    public static void main(String[] args) throws InterruptedException, CreateInstanseException {
+    public static void main(String[] args) throws InterruptedException, CreateInstanseException, IOException {
+
+        // compile <scenario> <image>
+        if(args.length == 3 && "compile".equals(args[0])){
+            int entries = ScenarioCompiler.compile(Paths.get(args[1]), StandardCharsets.UTF_8, Paths.get(args[2]));
+            log.info("Scenario {} is compiled into {} ({} entries)", args[1], args[2], entries);
+            return;
+        }
 
-        Path scenario;
+        TCPBuilder tcpBuilder = TCPBuilder.builder(TypeSideCommunication.SERVER, 8888);
 
-        // requires -Dscenario=/path/tp/file
-        if(System.getProperty("scenario") != null){
-            scenario = Paths.get(System.getProperty("scenario"));
+        // requires -Dscenario=/path/tp/file or -DscenarioImage=/path/to/image
+        if(System.getProperty("scenarioImage") != null){
+            tcpBuilder.setScenarioImage(Paths.get(System.getProperty("scenarioImage")));
+        } else if(System.getProperty("scenario") != null){
+            Path scenario = Paths.get(System.getProperty("scenario"));
+            tcpBuilder.setScenario(scenario);
         } else {
             throw new CreateInstanseException("File scenario not found");
         }
 
-        TCP serverTCPanalyzer = TCPBuilder
-                                    .builder(TypeSideCommunication.SERVER, 8888)
-                                    .setScenario(scenario)
-                                    .build();
+        TCP serverTCPanalyzer = tcpBuilder.build();
 
         serverTCPanalyzer.start();
 
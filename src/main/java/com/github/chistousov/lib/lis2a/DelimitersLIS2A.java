@@ -0,0 +1,57 @@
+package com.github.chistousov.lib.lis2a;
+
+import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+
+/**
+ * <p>
+ * Delimiters of a LIS2-A message, defined by the H record (Разделители сообщения LIS2-A, задаются записью H).
+ * </p>
+ * <p>
+ * The second to fifth characters of the H record are the field, repeat,
+ * component and escape delimiters, for example {@code H|\^&} (7.1.2).
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class DelimitersLIS2A {
+
+    private final byte field;
+    private final byte repeat;
+    private final byte component;
+    private final byte escape;
+
+    DelimitersLIS2A(byte field, byte repeat, byte component, byte escape) {
+        this.field = field;
+        this.repeat = repeat;
+        this.component = component;
+        this.escape = escape;
+    }
+
+    /*
+     * Read the delimiters from the H record starting at offset
+     * (Прочитать разделители из записи H, начинающейся с offset)
+     */
+    static DelimitersLIS2A read(byte[] data, int offset, int end) {
+        if (end - offset < 5 || data[offset] != 'H') {
+            throw new RuntimeInstanseException("The message should start with the H record and its delimiters");
+        }
+        return new DelimitersLIS2A(data[offset + 1], data[offset + 2], data[offset + 3], data[offset + 4]);
+    }
+
+    public byte getField() {
+        return field;
+    }
+
+    public byte getRepeat() {
+        return repeat;
+    }
+
+    public byte getComponent() {
+        return component;
+    }
+
+    public byte getEscape() {
+        return escape;
+    }
+}
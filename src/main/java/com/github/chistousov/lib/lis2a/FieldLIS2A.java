@@ -0,0 +1,203 @@
+package com.github.chistousov.lib.lis2a;
+
+/**
+ * <p>
+ * View of a field, repeat or component over the bytes of the message
+ * (Представление поля, повтора или компонента поверх байтов сообщения).
+ * </p>
+ * <p>
+ * Nothing is copied or decoded until {@link #toString()} is called.
+ * Repeats and components are numbered from 1, the components of a field are
+ * those of its first repeat.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class FieldLIS2A {
+
+    static final int FIELD = 0;
+    static final int REPEAT = 1;
+    static final int COMPONENT = 2;
+
+    private final MessageLIS2A message;
+    private final int start;
+    private final int end;
+
+    // what the view can still be split into
+    private final int level;
+
+    FieldLIS2A(MessageLIS2A message, int start, int end, int level) {
+        this.message = message;
+        this.start = start;
+        this.end = end;
+        this.level = level;
+    }
+
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    /**
+     * <p>
+     * Length in bytes (Длина в байтах)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * <p>
+     * Number of repeats, 1 for an empty field (Количество повторов, 1 для пустого поля)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getRepeatCount() {
+        return level == FIELD ? count(message.getDelimiters().getRepeat(), start, end) : 1;
+    }
+
+    /**
+     * <p>
+     * Repeat view (Представление повтора)
+     * </p>
+     *
+     * @param number - repeat from 1 (повтор от 1)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public FieldLIS2A getRepeat(int number) {
+        if (level != FIELD) {
+            return number == 1 ? this : new FieldLIS2A(message, end, end, COMPONENT);
+        }
+        return part(message.getDelimiters().getRepeat(), start, end, number, REPEAT);
+    }
+
+    /**
+     * <p>
+     * Number of components of the first repeat (Количество компонентов первого повтора)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getComponentCount() {
+        if (level == COMPONENT) {
+            return 1;
+        }
+        FieldLIS2A repeat = getRepeat(1);
+        return count(message.getDelimiters().getComponent(), repeat.start, repeat.end);
+    }
+
+    /**
+     * <p>
+     * Component view of the first repeat (Представление компонента первого повтора)
+     * </p>
+     *
+     * @param number - component from 1 (компонент от 1)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public FieldLIS2A getComponent(int number) {
+        if (level == COMPONENT) {
+            return number == 1 ? this : new FieldLIS2A(message, end, end, COMPONENT);
+        }
+        FieldLIS2A repeat = getRepeat(1);
+        return part(message.getDelimiters().getComponent(), repeat.start, repeat.end, number, COMPONENT);
+    }
+
+    /**
+     * <p>
+     * Compare with text without decoding the view, ASCII text is compared as is,
+     * other text is encoded in the charset of the message
+     * (Сравнить с текстом без декодирования представления, ASCII текст
+     * сравнивается как есть, другой текст кодируется в кодировке сообщения)
+     * </p>
+     *
+     * @param text - text (текст)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean contentEquals(CharSequence text) {
+        byte[] data = message.data();
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return bytesEqual(data, text.toString().getBytes(message.charset()));
+            }
+        }
+
+        // the message is in an ASCII compatible charset, as its delimiters are
+        if (text.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (data[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean bytesEqual(byte[] data, byte[] bytes) {
+        if (bytes.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (data[start + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Text of the view, decoded now (Текст представления, декодируется сейчас)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    @Override
+    public String toString() {
+        return start == end ? "" : new String(message.data(), start, end - start, message.charset());
+    }
+
+    private int count(byte delimiter, int from, int to) {
+        byte[] data = message.data();
+        int result = 1;
+        for (int i = from; i < to; i++) {
+            if (data[i] == delimiter) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private FieldLIS2A part(byte delimiter, int from, int to, int number, int partLevel) {
+        byte[] data = message.data();
+
+        int partStart = from;
+        int current = 1;
+
+        for (int i = from; i <= to; i++) {
+            if (i == to || data[i] == delimiter) {
+                if (current == number) {
+                    return new FieldLIS2A(message, partStart, i, partLevel);
+                }
+                current++;
+                partStart = i + 1;
+            }
+        }
+
+        return new FieldLIS2A(message, to, to, COMPONENT);
+    }
+}
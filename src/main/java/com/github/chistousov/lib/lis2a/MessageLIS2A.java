@@ -0,0 +1,179 @@
+package com.github.chistousov.lib.lis2a;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+
+/**
+ * <p>
+ * LIS2-A (formerly ASTM E1394) message indexed over its original bytes
+ * (Сообщение LIS2-A (ранее ASTM E1394), проиндексированное по исходным байтам).
+ * </p>
+ * <p>
+ * Parsing only records the offsets of the CR-terminated records, the bytes
+ * are neither copied nor decoded. Fields of a record are indexed the first
+ * time the record is read, repeats and components are found when asked for,
+ * and text is decoded only by {@link FieldLIS2A#toString()}.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class MessageLIS2A {
+
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+
+    private final byte[] data;
+    private final Charset charset;
+    private final DelimitersLIS2A delimiters;
+
+    // [start, end) of every record without CR (LF)
+    private final int[] recordStarts;
+    private final int[] recordEnds;
+    private final int recordCount;
+
+    // created the first time a record is read
+    private final RecordLIS2A[] records;
+
+    private MessageLIS2A(byte[] data, Charset charset, int[] recordStarts, int[] recordEnds, int recordCount) {
+        this.data = data;
+        this.charset = charset;
+        this.recordStarts = recordStarts;
+        this.recordEnds = recordEnds;
+        this.recordCount = recordCount;
+        this.records = new RecordLIS2A[recordCount];
+        this.delimiters = DelimitersLIS2A.read(data, recordStarts[0], recordEnds[0]);
+    }
+
+    /**
+     * <p>
+     * Index a message in UTF-8 (Проиндексировать сообщение в UTF-8)
+     * </p>
+     *
+     * @param data - message, it is not copied (сообщение, не копируется)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static MessageLIS2A parse(byte[] data) {
+        return parse(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <p>
+     * Index a message (Проиндексировать сообщение)
+     * </p>
+     *
+     * @param data - message, it is not copied (сообщение, не копируется)
+     * @param charset - charset of the text of fields (кодировка текста полей)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static MessageLIS2A parse(byte[] data, Charset charset) {
+        if (data == null || data.length == 0) {
+            throw new RuntimeInstanseException("The message should not be empty");
+        }
+
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int count = 0;
+
+        int start = 0;
+        for (int i = 0; i <= data.length; i++) {
+            if (i == data.length || data[i] == CR) {
+                if (i > start) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    starts[count] = start;
+                    ends[count] = i;
+                    count++;
+                }
+                start = i + 1;
+                // CR LF between records
+                if (start < data.length && data[start] == LF) {
+                    start++;
+                    i++;
+                }
+            }
+        }
+
+        if (count == 0) {
+            throw new RuntimeInstanseException("The message has no records");
+        }
+
+        return new MessageLIS2A(data, charset, starts, ends, count);
+    }
+
+    public DelimitersLIS2A getDelimiters() {
+        return delimiters;
+    }
+
+    /**
+     * <p>
+     * Number of records (Количество записей)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * <p>
+     * Type of the record (H, P, O, R, C, Q, L ...) without creating its view
+     * (Тип записи без создания ее представления)
+     * </p>
+     *
+     * @param index - record from 0 (запись от 0)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public char getRecordType(int index) {
+        checkIndex(index);
+        return (char) (data[recordStarts[index]] & 0xFF);
+    }
+
+    /**
+     * <p>
+     * Record view (Представление записи)
+     * </p>
+     *
+     * @param index - record from 0 (запись от 0)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public RecordLIS2A getRecord(int index) {
+        checkIndex(index);
+        RecordLIS2A record = records[index];
+        if (record == null) {
+            record = new RecordLIS2A(this, recordStarts[index], recordEnds[index]);
+            records[index] = record;
+        }
+        return record;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    Charset charset() {
+        return charset;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new RuntimeInstanseException(
+                    String.format("Record %d does not exist, the message has %d records", index, recordCount));
+        }
+    }
+}
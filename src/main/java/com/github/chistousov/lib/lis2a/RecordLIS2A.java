@@ -0,0 +1,127 @@
+package com.github.chistousov.lib.lis2a;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * View of one record of a LIS2-A message (Представление одной записи сообщения LIS2-A).
+ * </p>
+ * <p>
+ * Fields are numbered from 1 as in the standard: field 1 is the record type,
+ * {@code R.3} is the universal test ID of a result. A field that is not
+ * present is empty.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class RecordLIS2A {
+
+    private final MessageLIS2A message;
+    private final int start;
+    private final int end;
+
+    // offsets of the field delimiters, indexed on first access
+    private int[] fieldDelimiters;
+    private int fieldCount;
+
+    RecordLIS2A(MessageLIS2A message, int start, int end) {
+        this.message = message;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * <p>
+     * Record type (H, P, O, R, C, Q, L ...) (Тип записи)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public char getType() {
+        return (char) (message.data()[start] & 0xFF);
+    }
+
+    /**
+     * <p>
+     * Number of fields including the record type (Количество полей, включая тип записи)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFieldCount() {
+        index();
+        return fieldCount;
+    }
+
+    /**
+     * <p>
+     * Field view (Представление поля)
+     * </p>
+     *
+     * @param number - field from 1 (поле от 1)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public FieldLIS2A getField(int number) {
+        index();
+
+        if (number < 1 || number > fieldCount) {
+            return new FieldLIS2A(message, end, end, FieldLIS2A.COMPONENT);
+        }
+
+        int fieldStart = number == 1 ? start : fieldDelimiters[number - 2] + 1;
+        int fieldEnd = number == fieldCount ? end : fieldDelimiters[number - 1];
+
+        // H.2 holds the delimiters themselves and is not split
+        int level = number == 2 && getType() == 'H' ? FieldLIS2A.COMPONENT : FieldLIS2A.FIELD;
+
+        return new FieldLIS2A(message, fieldStart, fieldEnd, level);
+    }
+
+    /**
+     * <p>
+     * Text of a field, empty if it is not present (Текст поля, пустой, если его нет)
+     * </p>
+     *
+     * @param number - field from 1 (поле от 1)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public String getString(int number) {
+        return getField(number).toString();
+    }
+
+    @Override
+    public String toString() {
+        return new String(message.data(), start, end - start, message.charset());
+    }
+
+    private void index() {
+        if (fieldDelimiters != null) {
+            return;
+        }
+
+        byte[] data = message.data();
+        byte delimiter = message.getDelimiters().getField();
+
+        int[] delimiters = new int[16];
+        int count = 0;
+
+        for (int i = start; i < end; i++) {
+            if (data[i] == delimiter) {
+                if (count == delimiters.length) {
+                    delimiters = Arrays.copyOf(delimiters, count * 2);
+                }
+                delimiters[count++] = i;
+            }
+        }
+
+        fieldDelimiters = delimiters;
+        fieldCount = count + 1;
+    }
+}
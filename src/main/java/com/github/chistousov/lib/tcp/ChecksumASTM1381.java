@@ -0,0 +1,237 @@
+package com.github.chistousov.lib.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ByteProcessor;
+
+/**
+ * <p>
+ * LIS1-A frame checksum (Контрольная сумма фрейма LIS1-A).
+ * </p>
+ * <p>
+ * Modulo-256 sum of the frame number, text and ETB/ETX, written as two
+ * uppercase hexadecimal characters C1 C2 (6.3.3). The hex characters come from
+ * a precomputed table, nothing is allocated while summing. The instance form
+ * is updated incrementally as bytes arrive and can be reused with
+ * {@link #reset()}.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ChecksumASTM1381 implements ByteProcessor {
+
+    // C1 (high hex character) for every checksum value
+    private static final byte[] HIGH = new byte[256];
+
+    // C2 (low hex character) for every checksum value
+    private static final byte[] LOW = new byte[256];
+
+    static {
+        byte[] hex = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+        for (int i = 0; i < 256; i++) {
+            HIGH[i] = hex[i >>> 4];
+            LOW[i] = hex[i & 0x0F];
+        }
+    }
+
+    // running sum (modulo 256 is taken on read)
+    private int sum;
+
+    /**
+     * <p>
+     * Start a new sum (Начать новую сумму)
+     * </p>
+     *
+     * @return this
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ChecksumASTM1381 reset() {
+        this.sum = 0;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Add one byte (Добавить один байт)
+     * </p>
+     *
+     * @param value - frame byte (байт фрейма)
+     * @return this
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ChecksumASTM1381 update(byte value) {
+        this.sum += value & 0xFF;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Add the bytes [from, to) (Добавить байты [from, to))
+     * </p>
+     *
+     * @param data - frame bytes (байты фрейма)
+     * @param from - first index, inclusive (первый индекс, включительно)
+     * @param to - last index, exclusive (последний индекс, не включительно)
+     * @return this
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ChecksumASTM1381 update(byte[] data, int from, int to) {
+        this.sum += sum(data, from, to);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Add the bytes [from, to) without moving the reader index (Добавить байты [from, to) не сдвигая индекс чтения)
+     * </p>
+     *
+     * @param data - frame bytes (байты фрейма)
+     * @param from - first index, inclusive (первый индекс, включительно)
+     * @param to - last index, exclusive (последний индекс, не включительно)
+     * @return this
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ChecksumASTM1381 update(ByteBuf data, int from, int to) {
+        if (to > from) {
+            data.forEachByte(from, to - from, this);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean process(byte value) {
+        this.sum += value & 0xFF;
+        return true;
+    }
+
+    /**
+     * <p>
+     * Checksum value 0-255 (Значение контрольной суммы 0-255)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int value() {
+        return this.sum & 0xFF;
+    }
+
+    /**
+     * <p>
+     * C1 character of the current sum (Символ C1 текущей суммы)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public byte c1() {
+        return HIGH[value()];
+    }
+
+    /**
+     * <p>
+     * C2 character of the current sum (Символ C2 текущей суммы)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public byte c2() {
+        return LOW[value()];
+    }
+
+    /**
+     * <p>
+     * Does the received C1 C2 match the current sum? (Совпадают ли полученные C1 C2 с текущей суммой?)
+     * </p>
+     *
+     * @param c1 - received C1 (полученный C1)
+     * @param c2 - received C2 (полученный C2)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean matches(byte c1, byte c2) {
+        return c1() == c1 && c2() == c2;
+    }
+
+    /**
+     * <p>
+     * Checksum value 0-255 of the bytes [from, to) (Значение контрольной суммы 0-255 байтов [from, to))
+     * </p>
+     *
+     * @param data - frame bytes (байты фрейма)
+     * @param from - first index, inclusive (первый индекс, включительно)
+     * @param to - last index, exclusive (последний индекс, не включительно)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static int calculate(byte[] data, int from, int to) {
+        return sum(data, from, to) & 0xFF;
+    }
+
+    /**
+     * <p>
+     * Checksum value 0-255 of the bytes [from, to) (Значение контрольной суммы 0-255 байтов [from, to))
+     * </p>
+     *
+     * @param data - frame bytes (байты фрейма)
+     * @param from - first index, inclusive (первый индекс, включительно)
+     * @param to - last index, exclusive (последний индекс, не включительно)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static int calculate(ByteBuf data, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result += data.getByte(i) & 0xFF;
+        }
+        return result & 0xFF;
+    }
+
+    /**
+     * <p>
+     * C1 character of a checksum value (Символ C1 значения контрольной суммы)
+     * </p>
+     *
+     * @param checksum - checksum value 0-255 (значение контрольной суммы 0-255)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static byte c1(int checksum) {
+        return HIGH[checksum & 0xFF];
+    }
+
+    /**
+     * <p>
+     * C2 character of a checksum value (Символ C2 значения контрольной суммы)
+     * </p>
+     *
+     * @param checksum - checksum value 0-255 (значение контрольной суммы 0-255)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static byte c2(int checksum) {
+        return LOW[checksum & 0xFF];
+    }
+
+    private static int sum(byte[] data, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result += data[i] & 0xFF;
+        }
+        return result;
+    }
+}
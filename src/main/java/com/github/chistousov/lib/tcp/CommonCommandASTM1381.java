@@ -1,10 +1,7 @@
 package com.github.chistousov.lib.tcp;
 
 
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 /**
  * <p>
@@ -47,28 +44,18 @@ public enum CommonCommandASTM1381 {
         return name + "(" + number + ")";
     }
 
-    private static final Map<Byte, CommonCommandASTM1381> commonCommands = new HashMap<>();
+    // command of every byte value, NULL for text (команда каждого значения байта, NULL для текста)
+    private static final CommonCommandASTM1381[] commonCommands = new CommonCommandASTM1381[256];
 
     static {
-        commonCommands.put(NULL.getNumber(), NULL);
-        commonCommands.put(ENQ.getNumber(), ENQ);
-        commonCommands.put(ACK.getNumber(), ACK);
-        commonCommands.put(NAK.getNumber(), NAK);
-        commonCommands.put(STX.getNumber(), STX);
-        commonCommands.put(ETB.getNumber(), ETB);
-        commonCommands.put(ETX.getNumber(), ETX);
-        commonCommands.put(CR.getNumber(), CR);
-        commonCommands.put(LF.getNumber(), LF);
-        commonCommands.put(EOT.getNumber(), EOT);
-
+        Arrays.fill(commonCommands, NULL);
+        for (CommonCommandASTM1381 command : values()) {
+            commonCommands[command.getNumber() & 0xFF] = command;
+        }
     }
 
     public static CommonCommandASTM1381 getCommonCommandByNumber(byte number) {
-        CommonCommandASTM1381 commonCommand = commonCommands.get(number);
-        if (commonCommand == null) {
-            commonCommand = NULL;
-        }
-        return commonCommand;
+        return commonCommands[number & 0xFF];
     }
     
     /**
@@ -83,10 +70,7 @@ public enum CommonCommandASTM1381 {
      * @since 8
      */
     public static String displayCommandByte(String str){
-        for (Entry<Byte, CommonCommandASTM1381> entry : commonCommands.entrySet()) {
-            str = str.replaceAll(new String(new byte[] { entry.getValue().getNumber() }, StandardCharsets.UTF_8), "<" + entry.getValue().getName() + ">");
-        }
-        return str;
+        return DisplayASTM1381.render(str);
     }
 
 }
@@ -0,0 +1,110 @@
+package com.github.chistousov.lib.tcp;
+
+import java.time.Instant;
+
+/**
+ * <p>
+ * Receipt for one message sent with {@link TCP#send(byte[])} (Квитанция об одном сообщении, отправленном через {@link TCP#send(byte[])}).
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class DeliveryReceipt {
+
+    private final DeliveryStatus status;
+
+    private final Instant completedAt;
+
+    private final int frames;
+
+    private final int retransmits;
+
+    private final String failureReason;
+
+    DeliveryReceipt(DeliveryStatus status, Instant completedAt, int frames, int retransmits, String failureReason) {
+        this.status = status;
+        this.completedAt = completedAt;
+        this.frames = frames;
+        this.retransmits = retransmits;
+        this.failureReason = failureReason;
+    }
+
+    /**
+     * <p>
+     * Outcome of sending (Итог отправки)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public DeliveryStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * <p>
+     * Every frame is ACKed and EOT is sent (Каждый фрейм подтвержден ACK и отправлен EOT)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isDelivered() {
+        return status == DeliveryStatus.DELIVERED;
+    }
+
+    /**
+     * <p>
+     * When the outcome became known (Когда стал известен итог)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * <p>
+     * Frames of the message (Фреймов в сообщении)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * <p>
+     * Frames sent again after NAK (Фреймов, отправленных повторно после NAK)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getRetransmits() {
+        return retransmits;
+    }
+
+    /**
+     * <p>
+     * Why the message is not delivered, null if it is (Почему сообщение не доставлено, null если доставлено)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeliveryReceipt [status=%s, completedAt=%s, frames=%d, retransmits=%d, failureReason=%s]",
+                status, completedAt, frames, retransmits, failureReason);
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.chistousov.lib.tcp;
+
+/**
+ * <p>
+ * Outcome of sending one message (Итог отправки одного сообщения)
+ * </p>
+ * <p>
+ * DELIVERED - every frame is ACKed and EOT is sent (каждый фрейм подтвержден ACK и отправлен EOT),
+ * ABORTED - the transfer was aborted by the protocol (передача прервана протоколом),
+ * LOST - the connection was closed during the transfer (соединение закрыто во время передачи)
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public enum DeliveryStatus {
+    DELIVERED, ABORTED, LOST
+}
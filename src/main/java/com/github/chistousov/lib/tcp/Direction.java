@@ -0,0 +1,18 @@
+package com.github.chistousov.lib.tcp;
+
+/**
+ * <p>
+ * Direction of a protocol event (Направление события протокола)
+ * </p>
+ * <p>
+ * TO_REMOTE_SIDE - sent to the remote side (отправлено удаленной стороне),
+ * FROM_REMOTE_SIDE - received from the remote side (принято от удаленной стороны),
+ * NONE - not related to data (не связано с данными)
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public enum Direction {
+    TO_REMOTE_SIDE, FROM_REMOTE_SIDE, NONE
+}
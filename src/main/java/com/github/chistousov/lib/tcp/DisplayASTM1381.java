@@ -0,0 +1,144 @@
+package com.github.chistousov.lib.tcp;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+
+/*
+ * Rendering of frames for logs and events, control characters are shown as
+ * <STX>, <ETX> ... (Отображение фреймов для логов и событий, управляющие
+ * символы показываются как <STX>, <ETX> ...)
+ *
+ * The text is passed once and control characters are looked up in a table.
+ * The builder is reused per thread. lazy(...) gives an argument for a log
+ * line or an event that renders on the first toString(), so nothing is
+ * rendered if the line is not logged and nobody listens.
+ * (Текст проходится один раз, управляющие символы ищутся в таблице. Builder
+ * переиспользуется в потоке. lazy(...) дает аргумент для строки лога или
+ * события, который отображается при первом toString().)
+ */
+final class DisplayASTM1381 {
+
+    // <NAME> of every command character, null for text
+    private static final String[] DISPLAY = new String[128];
+
+    // a builder grown by a large message is not kept
+    private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    static {
+        for (CommonCommandASTM1381 command : CommonCommandASTM1381.values()) {
+            DISPLAY[command.getNumber()] = "<" + command.getName() + ">";
+        }
+    }
+
+    private DisplayASTM1381() {
+    }
+
+    static String render(CharSequence text) {
+        StringBuilder builder = builder();
+        appendChars(builder, text);
+        return release(builder);
+    }
+
+    static String render(ByteBuf buf, int index, int length, Charset charset) {
+        StringBuilder builder = builder();
+
+        if (isSingleByte(charset)) {
+            for (int i = index; i < index + length; i++) {
+                append(builder, (char) (buf.getByte(i) & 0xFF));
+            }
+        } else {
+            appendChars(builder, buf.toString(index, length, charset));
+        }
+
+        return release(builder);
+    }
+
+    static String render(byte[] data, Charset charset) {
+        StringBuilder builder = builder();
+
+        if (isSingleByte(charset)) {
+            for (byte b : data) {
+                append(builder, (char) (b & 0xFF));
+            }
+        } else {
+            appendChars(builder, new String(data, charset));
+        }
+
+        return release(builder);
+    }
+
+    /*
+     * Rendered on the first toString(), the buffer should still be readable then
+     * (Отображается при первом toString(), буфер должен быть еще доступен)
+     */
+    static Object lazy(ByteBuf buf, Charset charset) {
+        int index = buf.readerIndex();
+        int length = buf.readableBytes();
+        return new Lazy() {
+            @Override
+            String render() {
+                return DisplayASTM1381.render(buf, index, length, charset);
+            }
+        };
+    }
+
+    static Object lazy(byte[] data, Charset charset) {
+        return new Lazy() {
+            @Override
+            String render() {
+                return DisplayASTM1381.render(data, charset);
+            }
+        };
+    }
+
+    private abstract static class Lazy {
+        private String rendered;
+
+        abstract String render();
+
+        @Override
+        public String toString() {
+            if (this.rendered == null) {
+                this.rendered = render();
+            }
+            return this.rendered;
+        }
+    }
+
+    private static boolean isSingleByte(Charset charset) {
+        return StandardCharsets.ISO_8859_1.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    private static void appendChars(StringBuilder builder, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            append(builder, text.charAt(i));
+        }
+    }
+
+    private static void append(StringBuilder builder, char c) {
+        String display = c < DISPLAY.length ? DISPLAY[c] : null;
+        if (display == null) {
+            builder.append(c);
+        } else {
+            builder.append(display);
+        }
+    }
+
+    private static StringBuilder builder() {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static String release(StringBuilder builder) {
+        String result = builder.toString();
+        if (builder.capacity() > MAX_REUSED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return result;
+    }
+}
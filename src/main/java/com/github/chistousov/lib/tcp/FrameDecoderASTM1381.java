@@ -0,0 +1,114 @@
+package com.github.chistousov.lib.tcp;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+/**
+ * <p>
+ * Splits the inbound byte stream into LIS1-A frames and control characters
+ * (Разбивает входящий поток байт на фреймы LIS1-A и управляющие символы).
+ * </p>
+ * <p>
+ * Every emitted message is a retained slice of the inbound buffer (no copy):
+ * either a whole frame STX FN text ETB/ETX C1 C2 CR LF, a single control
+ * character (ENQ, ACK, NAK, EOT) or a run of noise bytes. Several frames or
+ * commands coalesced into one read are emitted one by one, a frame split
+ * between reads is held back until its LF arrives.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public class FrameDecoderASTM1381 extends ByteToMessageDecoder {
+
+    private static final byte STX = CommonCommandASTM1381.STX.getNumber();
+    private static final byte LF = CommonCommandASTM1381.LF.getNumber();
+
+    // frames longer than this are considered noise (фреймы длиннее считаются шумом)
+    private final int maxFrameSize;
+
+    // the rest of an oversized frame is skipped up to its LF
+    private boolean discarding;
+
+    /**
+     * <p>
+     * Splits the inbound byte stream into LIS1-A frames and control characters
+     * (Разбивает входящий поток байт на фреймы LIS1-A и управляющие символы)
+     * </p>
+     *
+     * @param maxFrameSize - frames longer than this are considered noise (фреймы длиннее считаются шумом)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public FrameDecoderASTM1381(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+
+        while (in.isReadable()) {
+
+            int start = in.readerIndex();
+            int end = in.writerIndex();
+
+            if (this.discarding) {
+                int lf = in.indexOf(start, end, LF);
+                if (lf < 0) {
+                    in.skipBytes(end - start);
+                    return;
+                }
+                in.skipBytes(lf - start + 1);
+                this.discarding = false;
+                continue;
+            }
+
+            byte first = in.getByte(start);
+
+            if (first == STX) {
+
+                int lf = in.indexOf(start + 1, end, LF);
+
+                if (lf < 0) {
+                    if (end - start > this.maxFrameSize) {
+                        // let the handler report the noise once, skip the rest of it
+                        out.add(in.readRetainedSlice(end - start));
+                        this.discarding = true;
+                    }
+                    // wait for the end of the frame
+                    return;
+                }
+
+                out.add(in.readRetainedSlice(lf - start + 1));
+
+            } else if (isCommand(first)) {
+
+                out.add(in.readRetainedSlice(1));
+
+            } else {
+
+                // noise up to the next frame or command
+                int index = start + 1;
+                while (index < end) {
+                    byte current = in.getByte(index);
+                    if (current == STX || isCommand(current)) {
+                        break;
+                    }
+                    index++;
+                }
+                out.add(in.readRetainedSlice(index - start));
+            }
+        }
+    }
+
+    private static boolean isCommand(byte value) {
+        return value == CommonCommandASTM1381.ENQ.getNumber()
+                || value == CommonCommandASTM1381.ACK.getNumber()
+                || value == CommonCommandASTM1381.NAK.getNumber()
+                || value == CommonCommandASTM1381.EOT.getNumber();
+    }
+}
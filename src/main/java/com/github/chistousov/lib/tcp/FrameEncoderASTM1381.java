@@ -0,0 +1,128 @@
+package com.github.chistousov.lib.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * <p>
+ * Writes LIS1-A frames straight into pooled buffers (Записывает фреймы LIS1-A напрямую в буферы из пула).
+ * </p>
+ * <p>
+ * STX, FN, the payload slice of the original message, ETB/ETX, C1 C2 and
+ * CR LF are written into one buffer from the allocator of the channel, the
+ * message itself is never copied into an intermediate array. To transmit the
+ * frame again send a {@link ByteBuf#retainedDuplicate()} of it.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class FrameEncoderASTM1381 {
+
+    // STX FN ETB/ETX C1 C2 CR LF
+    public static final int FRAME_OVERHEAD = 7;
+
+    private FrameEncoderASTM1381() {
+    }
+
+    /**
+     * <p>
+     * Build one frame (Построить один фрейм)
+     * </p>
+     *
+     * @param alloc - allocator of the channel (аллокатор канала)
+     * @param direct - use a direct buffer (использовать direct буфер)
+     * @param message - whole message (сообщение целиком)
+     * @param offset - first byte of the frame text in the message (первый байт текста фрейма в сообщении)
+     * @param length - length of the frame text (длина текста фрейма)
+     * @param frameNumber - FN 0-7
+     * @param isEndFrame - ETX if true, otherwise ETB (ETX если true, иначе ETB)
+     * @return frame, the caller owns the reference (фрейм, вызывающий владеет ссылкой)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static ByteBuf encode(ByteBufAllocator alloc, boolean direct, byte[] message, int offset, int length,
+            byte frameNumber, boolean isEndFrame) {
+        // the array is wrapped, not copied
+        return write(alloc, direct, Unpooled.wrappedBuffer(message), offset, length,
+                ChecksumASTM1381.calculate(message, offset, offset + length), frameNumber, isEndFrame);
+    }
+
+    /**
+     * <p>
+     * Build one frame from the readable bytes of a buffer, the reader index is not moved
+     * (Построить один фрейм из читаемых байтов буфера, индекс чтения не сдвигается)
+     * </p>
+     *
+     * @param alloc - allocator of the channel (аллокатор канала)
+     * @param direct - use a direct buffer (использовать direct буфер)
+     * @param text - text of the message (текст сообщения)
+     * @param index - first byte of the frame text (первый байт текста фрейма)
+     * @param length - length of the frame text (длина текста фрейма)
+     * @param frameNumber - FN 0-7
+     * @param isEndFrame - ETX if true, otherwise ETB (ETX если true, иначе ETB)
+     * @return frame, the caller owns the reference (фрейм, вызывающий владеет ссылкой)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static ByteBuf encode(ByteBufAllocator alloc, boolean direct, ByteBuf text, int index, int length,
+            byte frameNumber, boolean isEndFrame) {
+        return write(alloc, direct, text, index, length, ChecksumASTM1381.calculate(text, index, index + length),
+                frameNumber, isEndFrame);
+    }
+
+    /**
+     * <p>
+     * Build one frame whose text checksum is known, only FN and ETB/ETX are added to it
+     * (Построить один фрейм с известной контрольной суммой текста, к ней добавляются только FN и ETB/ETX)
+     * </p>
+     *
+     * @param alloc - allocator of the channel (аллокатор канала)
+     * @param direct - use a direct buffer (использовать direct буфер)
+     * @param text - text of the message (текст сообщения)
+     * @param index - first byte of the frame text (первый байт текста фрейма)
+     * @param length - length of the frame text (длина текста фрейма)
+     * @param textChecksum - checksum 0-255 of the frame text (контрольная сумма 0-255 текста фрейма)
+     * @param frameNumber - FN 0-7
+     * @param isEndFrame - ETX if true, otherwise ETB (ETX если true, иначе ETB)
+     * @return frame, the caller owns the reference (фрейм, вызывающий владеет ссылкой)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static ByteBuf encode(ByteBufAllocator alloc, boolean direct, ByteBuf text, int index, int length,
+            int textChecksum, byte frameNumber, boolean isEndFrame) {
+        return write(alloc, direct, text, index, length, textChecksum, frameNumber, isEndFrame);
+    }
+
+    /*
+     * STX FN text ETB/ETX C1 C2 CR LF, the checksum of the text is added to FN and ETB/ETX
+     * (к контрольной сумме текста добавляются FN и ETB/ETX)
+     */
+    private static ByteBuf write(ByteBufAllocator alloc, boolean direct, ByteBuf text, int index, int length,
+            int textChecksum, byte frameNumber, boolean isEndFrame) {
+
+        byte frameNumberChar = (byte) ('0' + frameNumber);
+        byte end = isEndFrame ? CommonCommandASTM1381.ETX.getNumber() : CommonCommandASTM1381.ETB.getNumber();
+
+        // FN ... ETB or ETX
+        int checksum = (frameNumberChar + textChecksum + end) & 0xFF;
+
+        int capacity = length + FRAME_OVERHEAD;
+        ByteBuf frame = direct ? alloc.directBuffer(capacity, capacity) : alloc.heapBuffer(capacity, capacity);
+
+        frame.writeByte(CommonCommandASTM1381.STX.getNumber());
+        frame.writeByte(frameNumberChar);
+        frame.writeBytes(text, index, length);
+        frame.writeByte(end);
+        frame.writeByte(ChecksumASTM1381.c1(checksum));
+        frame.writeByte(ChecksumASTM1381.c2(checksum));
+        frame.writeByte(CommonCommandASTM1381.CR.getNumber());
+        frame.writeByte(CommonCommandASTM1381.LF.getNumber());
+
+        return frame;
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.chistousov.lib.tcp;
+
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * <p>
+ * Splits one message into LIS1-A frames lazily (Лениво разбивает одно сообщение на фреймы LIS1-A).
+ * </p>
+ * <p>
+ * Only the next frame is encoded, when the previous one is accepted, so a
+ * message is held once and the first frame goes out without waiting for the
+ * rest. The text of a frame is at most {@code maxTextLength} bytes, 240 for a
+ * 247 character frame of LIS1-A (6.3.1). If record alignment is on, a frame
+ * ends after the last CR that fits, a record longer than a frame is split
+ * anyway. A streamed message is framed as its chunks arrive, a frame is
+ * ready once more than a full frame of text is buffered or the stream is
+ * over, so the last frame is never sent with ETB before the stream ends. A
+ * message of a compiled scenario is split as it was compiled, with the stored
+ * checksums.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class FrameSegmenterASTM1381 {
+
+    // text of a 247 character frame
+    public static final int DEFAULT_MAX_TEXT_LENGTH = 240;
+
+    // text not framed yet, from the reader index (еще не разбитый текст, от индекса чтения)
+    private final ByteBuf text;
+
+    // null if the whole message is in memory
+    private final OutboundStream stream;
+
+    // splits and checksums of a compiled scenario, otherwise null
+    private final CompiledMessage compiled;
+
+    private final int maxTextLength;
+    private final boolean alignToRecords;
+
+    // frames produced
+    private int frames;
+    // the frame with ETX is produced (фрейм с ETX произведен)
+    private boolean endFrameProduced;
+
+    /**
+     * <p>
+     * Segmenter of one message (Разбиватель одного сообщения)
+     * </p>
+     *
+     * @param message - whole message (сообщение целиком)
+     * @param maxTextLength - maximum text length of a frame (максимальная длина текста фрейма)
+     * @param alignToRecords - end frames after CR where possible (заканчивать фреймы после CR, где возможно)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public FrameSegmenterASTM1381(byte[] message, int maxTextLength, boolean alignToRecords) {
+        this.text = Unpooled.wrappedBuffer(message);
+        this.stream = null;
+        this.compiled = null;
+        this.maxTextLength = maxTextLength;
+        this.alignToRecords = alignToRecords;
+    }
+
+    FrameSegmenterASTM1381(OutboundStream stream, int maxTextLength, boolean alignToRecords) {
+        this.text = stream.text();
+        this.stream = stream;
+        this.compiled = null;
+        this.maxTextLength = maxTextLength;
+        this.alignToRecords = alignToRecords;
+    }
+
+    FrameSegmenterASTM1381(CompiledMessage compiled) {
+        this.text = Unpooled.wrappedBuffer(compiled.getText());
+        this.stream = null;
+        this.compiled = compiled;
+        this.maxTextLength = compiled.getLength();
+        this.alignToRecords = false;
+    }
+
+    /**
+     * <p>
+     * Is there a frame left? Until the frame with ETX, an empty message still gives one frame
+     * (Остался ли фрейм? До фрейма с ETX, пустое сообщение все равно дает один фрейм)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean hasNext() {
+        return !this.endFrameProduced;
+    }
+
+    /**
+     * <p>
+     * Can the next frame be encoded now? Always true for a message in memory
+     * (Можно ли закодировать следующий фрейм сейчас? Всегда true для сообщения в памяти)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isReady() {
+        // text is kept after the frame until the end of the stream is known
+        return isComplete() || this.text.readableBytes() > this.maxTextLength;
+    }
+
+    /*
+     * Run the callback on the event loop once the next frame is ready
+     * (Выполнить callback в event loop, когда следующий фрейм будет готов)
+     */
+    void onReady(Runnable callback) {
+        this.stream.onReady(callback);
+    }
+
+    /*
+     * The stream of the message failed (Поток сообщения завершился ошибкой)
+     */
+    Throwable getError() {
+        return this.stream == null ? null : this.stream.getError();
+    }
+
+    /*
+     * The message is done with, the stream is cancelled and its buffer released
+     * (Сообщение больше не нужно, поток отменяется, его буфер освобождается)
+     */
+    void release() {
+        if (this.stream != null) {
+            this.stream.cancel();
+        }
+    }
+
+    /**
+     * <p>
+     * Encode the next frame, ETX is set on the last one (Закодировать следующий фрейм, у последнего ставится ETX)
+     * </p>
+     *
+     * @param alloc - allocator of the channel (аллокатор канала)
+     * @param direct - use a direct buffer (использовать direct буфер)
+     * @param frameNumber - FN 0-7
+     * @return frame, the caller owns the reference (фрейм, вызывающий владеет ссылкой)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ByteBuf next(ByteBufAllocator alloc, boolean direct, byte frameNumber) {
+        int length = nextLength();
+        boolean isEndFrame = isComplete() && length == this.text.readableBytes();
+
+        ByteBuf frame = this.compiled == null
+                ? FrameEncoderASTM1381.encode(alloc, direct, this.text, this.text.readerIndex(), length,
+                        frameNumber, isEndFrame)
+                : FrameEncoderASTM1381.encode(alloc, direct, this.text, this.text.readerIndex(), length,
+                        this.compiled.getFrameTextChecksum(this.frames), frameNumber, isEndFrame);
+
+        this.text.skipBytes(length);
+        this.frames++;
+        this.endFrameProduced = isEndFrame;
+
+        if (this.stream != null) {
+            this.stream.consumed();
+        }
+
+        return frame;
+    }
+
+    /**
+     * <p>
+     * Frames produced so far (Фреймов произведено к этому моменту)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFrames() {
+        return this.frames;
+    }
+
+    private boolean isComplete() {
+        return this.stream == null || this.stream.isComplete();
+    }
+
+    private int nextLength() {
+        if (this.compiled != null) {
+            return this.compiled.getFrameLength(this.frames);
+        }
+
+        int remaining = this.text.readableBytes();
+        if (remaining <= this.maxTextLength) {
+            return remaining;
+        }
+
+        if (this.alignToRecords) {
+            int offset = this.text.readerIndex();
+            for (int i = offset + this.maxTextLength - 1; i >= offset; i--) {
+                if (this.text.getByte(i) == CommonCommandASTM1381.CR.getNumber()) {
+                    return i + 1 - offset;
+                }
+            }
+        }
+
+        return this.maxTextLength;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.chistousov.lib.tcp;
+
+import java.time.Instant;
+
+import io.netty.channel.EventLoop;
+import reactor.core.publisher.MonoSink;
+
+/*
+ * Message waiting in the outbound queue and whoever waits for its receipt
+ * (Сообщение в очереди на отправку и тот, кто ждет квитанцию о нем)
+ */
+final class OutboundMessage {
+
+    // whole message, or null if it is streamed
+    private final byte[] message;
+
+    private final OutboundStream stream;
+
+    // null for messages of MessageFlowForNetwork (нет квитанции)
+    private final MonoSink<DeliveryReceipt> receiptSink;
+
+    private boolean completed;
+
+    // times the message was put back into the queue after an abort
+    private int requeues;
+
+    OutboundMessage(byte[] message, MonoSink<DeliveryReceipt> receiptSink) {
+        this.message = message;
+        this.stream = null;
+        this.receiptSink = receiptSink;
+    }
+
+    OutboundMessage(OutboundStream stream, MonoSink<DeliveryReceipt> receiptSink) {
+        this.message = null;
+        this.stream = stream;
+        this.receiptSink = receiptSink;
+    }
+
+    /*
+     * A streamed message can be sent only once (Потоковое сообщение можно отправить только один раз)
+     */
+    boolean isReplayable() {
+        return message != null;
+    }
+
+    /*
+     * Frames of the message, a stream is subscribed here
+     * (Фреймы сообщения, здесь подписывается поток)
+     */
+    FrameSegmenterASTM1381 segment(EventLoop eventLoop, int maxTextLength, boolean alignToRecords) {
+        if (this.stream == null) {
+            return new FrameSegmenterASTM1381(this.message, maxTextLength, alignToRecords);
+        }
+        this.stream.start(eventLoop, maxTextLength);
+        return new FrameSegmenterASTM1381(this.stream, maxTextLength, alignToRecords);
+    }
+
+    int getRequeues() {
+        return requeues;
+    }
+
+    int incrementRequeues() {
+        return ++requeues;
+    }
+
+    /*
+     * Only the first outcome is reported (Сообщается только первый итог)
+     */
+    void complete(DeliveryStatus status, int frames, int retransmits, String failureReason) {
+        if (this.completed) {
+            return;
+        }
+        this.completed = true;
+
+        if (this.receiptSink != null) {
+            this.receiptSink.success(new DeliveryReceipt(status, Instant.now(), frames, retransmits, failureReason));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.chistousov.lib.tcp;
+
+import java.nio.ByteBuffer;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import reactor.core.CoreSubscriber;
+
+/*
+ * Body of a streamed message (Тело потокового сообщения).
+ *
+ * The publisher is subscribed only when the message is being sent and asked
+ * for one chunk at a time while less than two frames of text are buffered.
+ * Chunks are wrapped, not copied, and every method runs on the event loop of
+ * the session, so the buffer needs no locking.
+ * (Издатель подписывается только при отправке сообщения, чанки запрашиваются
+ * по одному, пока в буфере меньше двух фреймов текста. Чанки оборачиваются
+ * без копирования, все методы выполняются в event loop сессии.)
+ */
+final class OutboundStream implements CoreSubscriber<ByteBuffer> {
+
+    private final Publisher<ByteBuffer> publisher;
+
+    private final CompositeByteBuf text = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+
+    private EventLoop eventLoop;
+    private int bufferedLimit;
+
+    private Subscription subscription;
+    private boolean requested;
+    private boolean complete;
+    private Throwable error;
+
+    // the session waits for the next frame of text
+    private Runnable readyCallback;
+
+    OutboundStream(Publisher<ByteBuffer> publisher) {
+        this.publisher = publisher;
+    }
+
+    void start(EventLoop eventLoop, int maxTextLength) {
+        this.eventLoop = eventLoop;
+        this.bufferedLimit = maxTextLength * 2;
+        this.publisher.subscribe(this);
+    }
+
+    CompositeByteBuf text() {
+        return this.text;
+    }
+
+    boolean isComplete() {
+        return this.complete;
+    }
+
+    Throwable getError() {
+        return this.error;
+    }
+
+    void onReady(Runnable callback) {
+        this.readyCallback = callback;
+    }
+
+    /*
+     * Text of a frame was taken, more is requested if the buffer runs low
+     * (Текст фрейма взят, при нехватке в буфере запрашивается еще)
+     */
+    void consumed() {
+        this.text.discardReadComponents();
+        requestMore();
+    }
+
+    /*
+     * The message is aborted or the connection is closed
+     * (Сообщение прервано или соединение закрыто)
+     */
+    void cancel() {
+        this.readyCallback = null;
+        if (this.subscription != null) {
+            this.subscription.cancel();
+        }
+        if (this.text.refCnt() > 0) {
+            this.text.release();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.eventLoop.execute(() -> {
+            this.subscription = subscription;
+            requestMore();
+        });
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+        this.eventLoop.execute(() -> {
+            this.requested = false;
+            if (this.text.refCnt() == 0) {
+                return;
+            }
+            this.text.addComponent(true, Unpooled.wrappedBuffer(chunk));
+            requestMore();
+            signalReady();
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.eventLoop.execute(() -> {
+            this.error = throwable;
+            this.complete = true;
+            signalReady();
+        });
+    }
+
+    @Override
+    public void onComplete() {
+        this.eventLoop.execute(() -> {
+            this.complete = true;
+            signalReady();
+        });
+    }
+
+    private void requestMore() {
+        if (this.subscription != null && !this.requested && !this.complete
+                && this.text.refCnt() > 0 && this.text.readableBytes() < this.bufferedLimit) {
+            this.requested = true;
+            this.subscription.request(1);
+        }
+    }
+
+    private void signalReady() {
+        if (this.readyCallback != null
+                && (this.complete || this.text.readableBytes() > this.bufferedLimit / 2)) {
+            Runnable callback = this.readyCallback;
+            this.readyCallback = null;
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.chistousov.lib.tcp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * One event of the protocol (Одно событие протокола).
+ * </p>
+ * <p>
+ * Events are created only while {@link TCP#getEvents()} has subscribers. The
+ * payload is a copy of the bytes sent or received, its display text is
+ * rendered on the first call of {@link #getPayloadText()}.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ProtocolEvent {
+
+    // 0 for events of the client or server itself (0 для событий самого клиента или сервера)
+    private final int session;
+
+    private final ProtocolEventKind kind;
+
+    private final Direction direction;
+
+    // null if not known (null, если неизвестна)
+    private final State state;
+
+    private final long timestamp;
+
+    // null for errors and reconnecting
+    private final byte[] payload;
+
+    private final Charset charset;
+
+    // null unless an error or timeout
+    private final String message;
+
+    // rendered on demand (отображается по требованию)
+    private String payloadText;
+
+    ProtocolEvent(int session, ProtocolEventKind kind, Direction direction, State state, byte[] payload,
+            Charset charset, String message) {
+        this.session = session;
+        this.kind = kind;
+        this.direction = direction;
+        this.state = state;
+        this.timestamp = System.currentTimeMillis();
+        this.payload = payload;
+        this.charset = charset;
+        this.message = message;
+    }
+
+    /**
+     * <p>
+     * Number of the session of the remote side from 1, 0 for events of the client or server itself
+     * (Номер сессии удаленной стороны с 1, 0 для событий самого клиента или сервера)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getSession() {
+        return session;
+    }
+
+    public ProtocolEventKind getKind() {
+        return kind;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * <p>
+     * The phase the client or server was in, null if not known (Фаза, в которой был клиент или сервер, null, если неизвестна)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * <p>
+     * FN 0-7 of a frame, -1 for other events (FN 0-7 фрейма, -1 для других событий)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFrameNumber() {
+        if (this.payload == null || this.payload.length < 2
+                || this.payload[0] != CommonCommandASTM1381.STX.getNumber()) {
+            return -1;
+        }
+        int frameNumber = this.payload[1] - '0';
+        return frameNumber >= 0 && frameNumber <= 7 ? frameNumber : -1;
+    }
+
+    /**
+     * <p>
+     * Bytes sent or received (Байтов отправлено или принято)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getByteCount() {
+        return this.payload == null ? 0 : this.payload.length;
+    }
+
+    /**
+     * <p>
+     * Milliseconds since the epoch (Миллисекунды от начала эпохи)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * <p>
+     * Bytes sent or received, read only, null if none (Отправленные или принятые байты, только чтение, null, если их нет)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ByteBuffer getPayload() {
+        return this.payload == null ? null : ByteBuffer.wrap(this.payload).asReadOnlyBuffer();
+    }
+
+    /**
+     * <p>
+     * Payload with control characters shown as &lt;STX&gt;, &lt;ETX&gt; ..., empty if none
+     * (Данные с управляющими символами в виде &lt;STX&gt;, &lt;ETX&gt; ..., пусто, если их нет)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public String getPayloadText() {
+        if (this.payloadText == null) {
+            this.payloadText = this.payload == null ? "" : DisplayASTM1381.render(this.payload, this.charset);
+        }
+        return this.payloadText;
+    }
+
+    /**
+     * <p>
+     * Description of an error or timeout, null for other events (Описание ошибки или таймаута, null для других событий)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * <p>
+     * Text of the event as published by getStdIn, getStdOut and getStdErr
+     * (Текст события в том виде, в каком его публикуют getStdIn, getStdOut и getStdErr)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    @Override
+    public String toString() {
+        switch (this.kind) {
+            case COMMAND_SENT:
+                return String.format("frame: %s phase: %s", command(), this.state);
+            case FRAME_SENT:
+                return String.format("frame: %s phase: %s", getPayloadText(), this.state);
+            case COMMAND_RECEIVED:
+                return String.format("command: %s phase: %s", command(), this.state);
+            case FRAME_RECEIVED:
+                return String.format("bytes: %s phase: %s", getPayloadText(), this.state);
+            case MESSAGE_RECEIVED:
+                return String.format("message: %s phase: %s", getPayloadText(), this.state);
+            case RECONNECTING:
+                return "reconnecting to server";
+            default:
+                return this.state == null
+                        ? String.format("error: %s", this.message)
+                        : String.format("error: %s phase: %s", this.message, this.state);
+        }
+    }
+
+    private CommonCommandASTM1381 command() {
+        return CommonCommandASTM1381.getCommonCommandByNumber(this.payload[0]);
+    }
+}
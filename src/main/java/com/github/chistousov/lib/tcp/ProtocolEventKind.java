@@ -0,0 +1,21 @@
+package com.github.chistousov.lib.tcp;
+
+/**
+ * <p>
+ * Kind of a protocol event (Вид события протокола)
+ * </p>
+ * <p>
+ * COMMAND_SENT, FRAME_SENT - a command or frame is sent (отправлена команда или фрейм),
+ * COMMAND_RECEIVED, FRAME_RECEIVED - a command or frame is received (принята команда или фрейм),
+ * MESSAGE_RECEIVED - a message is received completely (сообщение принято полностью),
+ * ERROR - an error of the protocol or connection (ошибка протокола или соединения),
+ * TIMEOUT - a timer of the phase expired (истек таймер фазы),
+ * RECONNECTING - the client connects to the server again (клиент снова подключается к серверу)
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public enum ProtocolEventKind {
+    COMMAND_SENT, FRAME_SENT, COMMAND_RECEIVED, FRAME_RECEIVED, MESSAGE_RECEIVED, ERROR, TIMEOUT, RECONNECTING
+}
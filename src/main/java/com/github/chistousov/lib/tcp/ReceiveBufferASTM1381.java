@@ -0,0 +1,95 @@
+package com.github.chistousov.lib.tcp;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import io.netty.buffer.ByteBuf;
+
+/*
+ * Text of the message being received (Текст принимаемого сообщения).
+ *
+ * Frames are appended to one array that grows by doubling, so the text of
+ * earlier frames is not copied again for every frame. Complete records (up
+ * to and including CR) are handed out once, a record split between ETB
+ * frames is handed out when the frame with its CR arrives. Used on the event
+ * loop of the session only.
+ * (Фреймы дописываются в один массив, который растет удвоением, текст
+ * прежних фреймов не копируется заново на каждый фрейм. Полные записи (до CR
+ * включительно) выдаются один раз, запись, разбитая между ETB фреймами,
+ * выдается, когда придет фрейм с ее CR.)
+ */
+final class ReceiveBufferASTM1381 {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    // start of the first record not handed out yet
+    private int recordStart;
+    // records are looked for from here
+    private int scanned;
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    void append(ByteBuf source, int index, int length) {
+        if (this.size + length > this.data.length) {
+            this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.size + length));
+        }
+        source.getBytes(index, this.data, this.size, length);
+        this.size += length;
+    }
+
+    /*
+     * Hand out the records completed by the appended text
+     * (Выдать записи, завершенные дописанным текстом)
+     */
+    void forEachNewRecord(Consumer<byte[]> consumer) {
+        for (; this.scanned < this.size; this.scanned++) {
+            if (this.data[this.scanned] == CommonCommandASTM1381.CR.getNumber()) {
+                consumer.accept(Arrays.copyOfRange(this.data, this.recordStart, this.scanned + 1));
+                this.recordStart = this.scanned + 1;
+            }
+        }
+    }
+
+    /*
+     * Hand out the text after the last CR, at the end of the message
+     * (Выдать текст после последнего CR, в конце сообщения)
+     */
+    void lastRecord(Consumer<byte[]> consumer) {
+        forEachNewRecord(consumer);
+        if (this.recordStart < this.size) {
+            consumer.accept(Arrays.copyOfRange(this.data, this.recordStart, this.size));
+            this.recordStart = this.size;
+        }
+    }
+
+    /*
+     * Drop the records handed out, only the unfinished one is moved
+     * (Отбросить выданные записи, переносится только незавершенная)
+     */
+    void discardRecords() {
+        if (this.recordStart > 0) {
+            System.arraycopy(this.data, this.recordStart, this.data, 0, this.size - this.recordStart);
+            this.size -= this.recordStart;
+            this.scanned -= this.recordStart;
+            this.recordStart = 0;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(this.data, this.size);
+    }
+
+    void clear() {
+        if (this.data.length > INITIAL_CAPACITY) {
+            this.data = new byte[INITIAL_CAPACITY];
+        }
+        this.size = 0;
+        this.recordStart = 0;
+        this.scanned = 0;
+    }
+}
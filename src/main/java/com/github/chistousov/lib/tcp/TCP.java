@@ -1,44 +1,56 @@
 package com.github.chistousov.lib.tcp;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import com.github.chistousov.lib.TypeSideCommunication;
 import com.github.chistousov.lib.exceptions.CreateInstanseException;
 import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+import com.github.chistousov.lib.tcp.scenario.CreateFrameException;
+import com.github.chistousov.lib.tcp.scenario.ScenarioCursor;
+import com.github.chistousov.lib.tcp.scenario.ScenarioFlow;
+import com.github.chistousov.lib.tcp.scenario.ScenarioImage;
+import com.github.chistousov.lib.tcp.scenario.ScenarioList;
+import com.github.chistousov.lib.tcp.scenario.ScenarioReader;
 import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
-import com.github.chistousov.lib.tcp.scenario.frame.builder.ReceiveFrameBuilder;
-import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
-import com.github.chistousov.lib.tcp.scenario.frame.impl.ReceiveFrame;
-import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
-import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
-import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
 
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.ByteBuf;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
 import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.EmitResult;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
 import reactor.netty.Connection;
 import reactor.netty.DisposableServer;
 import reactor.netty.NettyInbound;
 import reactor.netty.NettyOutbound;
+import reactor.netty.resources.LoopResources;
 import reactor.netty.tcp.TcpClient;
 import reactor.netty.tcp.TcpServer;
 
@@ -54,37 +66,69 @@ import reactor.netty.tcp.TcpServer;
 public class TCP {
     private static Logger log = LoggerFactory.getLogger(TCP.class);
 
-    private static final String FULLY = "fully";
-    private static final String TRY_SEND_MESSAGE_TO_CLIENT = "Try send message {} to CLIENT";
-    private static final String RECEIVED_NOISE = "Received noise";
-    private static final String SERVER_TO_CLIENT = "SERVER -->> CLIENT";
-    private static final String CLIENT_TO_SERVER = "CLIENT -->> SERVER";
-    private static final int MAX_FRAME_SIZE = 64_000;
-
-    // the phase the client or server is in (фаза, в которой находится клиент или
-    // сервер)
-    private State statePhase;
-
-    // for sending frames
-    private byte[][] currentFramesToSend;
-    private int indexCurrentFrameToSend;
-    // FN 0-7
-    private byte currentFrameNumberSend;
-
-    // for receiving frames
-    private byte[] bufferReceiveData;
-    private byte[] bufferReceiveFramesData;
-    // FN 0-7
-    private byte currentFrameNumberReceive;
+    static final int MAX_FRAME_SIZE = 64_000;
+    private static final String FRAME_DECODER = "astm1381FrameDecoder";
+    private static final int INPUT_STREAM_CHUNK_SIZE = 8192;
+
+    // kinds of events published by getStdIn, getStdOut and getStdErr
+    private static final Set<ProtocolEventKind> STD_IN_KINDS = Collections.unmodifiableSet(EnumSet.of(
+            ProtocolEventKind.COMMAND_SENT, ProtocolEventKind.FRAME_SENT, ProtocolEventKind.RECONNECTING));
+    private static final Set<ProtocolEventKind> STD_OUT_KINDS = Collections.unmodifiableSet(EnumSet.of(
+            ProtocolEventKind.COMMAND_RECEIVED, ProtocolEventKind.FRAME_RECEIVED));
+    private static final Set<ProtocolEventKind> STD_ERR_KINDS = Collections.unmodifiableSet(EnumSet.of(
+            ProtocolEventKind.ERROR, ProtocolEventKind.TIMEOUT));
 
     // client or server
     private TypeSideCommunication typeSideCommunication;
 
-    // number of attempts to send a message (6.5.1.2)
-    private int numberOfAttemptsToSendMessage;
+    // server or client is running (set in callbacks of Netty)
+    private volatile boolean isRunning = false;
+
+    // binding or connecting in progress (привязка или подключение в процессе)
+    private volatile Disposable starting;
+
+    // scheduler of the flows and blocking reads, disposed in stop() if created by TCP
+    private volatile Scheduler scheduler;
+    private final boolean ownScheduler;
+
+    // event loops given by the caller, or created for eventLoopThreads and disposed in stop()
+    private final LoopResources loopResources;
+    private final int eventLoopThreads;
+    private LoopResources ownLoopResources;
+
+    // frames are written into direct buffers
+    private boolean preferDirectBuffer;
+
+    // LIS1-A timers (6.5.2) and delays of the protocol
+    private Duration establishmentTimer;
+    private Duration senderTimer;
+    private Duration receiverTimer;
+    private Duration busyTimer;
+    private Duration contentionTimer;
+    private Duration scenarioPacing;
+
+    // queued messages sent in one transfer phase (client)
+    private int maxMessagesPerTransfer;
+
+    // retry policy (6.5.1.2): attempts per frame, then abort and requeue with back-off (client)
+    private int maxFrameAttempts;
+    private int maxRequeues;
+    private Duration requeueBackoff;
+    private Duration maxRequeueBackoff;
 
-    // server or client is running
-    private boolean isRunning = false;
+    // segmentation of the messages of the client (6.3.1)
+    private int maxFrameTextLength;
+    private boolean alignFramesToRecords;
+
+    // text of the scenario, expected messages and logs, received data stays bytes
+    private Charset charset;
+
+    // received commands by phase (принятые команды по фазам)
+    private final LongAdder[] transitionCounters = newTransitionCounters();
+
+    // transfers aborted and messages put back into the queue
+    private final LongAdder abortedMessages = new LongAdder();
+    private final LongAdder requeuedMessages = new LongAdder();
 
     // ---- SERVER ----
 
@@ -92,97 +136,108 @@ public class TCP {
     // scenario for server
     private Path scenario;
 
+    // or its compiled image, shared by the sessions
+    private ScenarioImage scenarioImage;
+
+    // or frames in memory (или фреймы в памяти)
+    private List<AbstractFrame> scenarioFrames;
+    private Publisher<AbstractFrame> scenarioFlow;
+
     // object to stop the server
-    private DisposableServer disposableServer;
+    private volatile DisposableServer disposableServer;
 
     // object server
     private TcpServer tcpServer;
 
-    // to simulate sending in parts
-    private static final int MAX_FRAME_SIZE_FOR_SIMULATE = 50;
-
-    // current CrushingType for send
-    private CrushingType currentCrushingType;
-
-    // current frame to send
-    private byte[] currentSendMessageBytesSimulate;
-
-    // how much to simulate an erroneous situation
-    private byte imitationErrorAmount;
 
-    // check the message from the client
-    private String shouldBeReceiveStr;
+    // sessions of the connected remote sides (сессии подключенных удаленных сторон)
+    private final Set<TCPSession> sessions = ConcurrentHashMap.newKeySet();
 
-    // simulation messages
-    private List<AbstractFrame> abstractMessages;
+    // numbers of the sessions from 1 (номера сессий с 1)
+    private final AtomicInteger sessionNumbers = new AtomicInteger();
 
     // ---- ----
 
     // ---- CLIENT ----
 
     // object to stop the client
-    private Connection connectionClient;
+    private volatile Connection connectionClient;
 
     // object client
     private TcpClient tcpClient;
 
-    // message flow for network
-    private Queue<byte[]> messageFlowForNetworkQueue;
+    // message flow for network (bounded, requested with demand)
+    private TCPOutboundQueue messageFlowForNetworkQueue;
 
     // message flow from network
     private Sinks.Many<byte[]> messageFlowFromNetwork;
 
+    // messages from network as streams of chunks (null unless enabled)
+    private Sinks.Many<Flux<ByteBuffer>> messageStreamsFromNetwork;
+
+    // records from network as soon as they are received (null unless enabled)
+    private Sinks.Many<byte[]> recordFlowFromNetwork;
+
     // ---- ----
 
-    // Events related to sending something to the analyzer
-    private Sinks.Many<String> sinksStdIn;
+    // events of the protocol, created only while there are subscribers
+    private Sinks.Many<ProtocolEvent> events;
 
-    // Events related to the arrival of something from the analyzer
-    private Sinks.Many<String> sinksStdOut;
+    // events not delivered to slow subscribers
+    private final LongAdder droppedEvents = new LongAdder();
 
-    // Events of interaction errors with the analyzer
-    private Sinks.Many<String> sinksStdErr;
+    // called on the thread that emits the event, never dropped (вызываются в потоке события, не теряют событий)
+    private final List<Consumer<ProtocolEvent>> eventListeners = new CopyOnWriteArrayList<>();
 
     /**
      * <p>
      * Events related to sending something to the analyzer
      * </p>
+     * <p>
+     * A view of {@link #getEvents()}, events are produced only while there are subscribers (Представление getEvents(), события создаются, только пока есть подписчики)
+     * </p>
      *
      * @author Nikita Chistousov (chistousov.nik@yandex.ru)
      * @since 8
      */
     public Flux<String> getStdIn() {
-        return sinksStdIn
-                .asFlux()
-                .publishOn(Schedulers.newSingle("stdin thread", true));
+        return publishOnScheduler(getEvents()
+                .filter(event -> STD_IN_KINDS.contains(event.getKind())))
+                .map(ProtocolEvent::toString);
     }
 
     /**
      * <p>
      * Events related to the arrival of something from the analyzer
      * </p>
+     * <p>
+     * A view of {@link #getEvents()}, events are produced only while there are subscribers (Представление getEvents(), события создаются, только пока есть подписчики)
+     * </p>
      *
      * @author Nikita Chistousov (chistousov.nik@yandex.ru)
      * @since 8
      */
     public Flux<String> getStdOut() {
-        return sinksStdOut
-                .asFlux()
-                .publishOn(Schedulers.newSingle("stdout thread", true));
+        return publishOnScheduler(getEvents()
+                .filter(event -> STD_OUT_KINDS.contains(event.getKind())))
+                .map(ProtocolEvent::toString);
     }
 
     /**
      * <p>
      * Events of interaction errors with the analyzer
      * </p>
+     * <p>
+     * A view of {@link #getEvents()}, events are produced only while there are subscribers (Представление getEvents(), события создаются, только пока есть подписчики)
+     * </p>
      *
      * @author Nikita Chistousov (chistousov.nik@yandex.ru)
      * @since 8
      */
     public Flux<String> getStdErr() {
-        return sinksStdErr
-                .asFlux()
-                .publishOn(Schedulers.newSingle("stderror thread", true));
+        return publishOnScheduler(getEvents()
+                .filter(event -> STD_ERR_KINDS.contains(event.getKind())))
+                .map(ProtocolEvent::toString);
     }
 
     public TCP(TCPBuilder tcpBuilder) {
@@ -195,10 +250,20 @@ public class TCP {
             throw new CreateInstanseException("TypeSideCommunication should not be null");
         }
 
-        if (tcpBuilder.getTypeSideCommunication() == TypeSideCommunication.SERVER && tcpBuilder.getScenario() == null) {
+        if (tcpBuilder.getTypeSideCommunication() == TypeSideCommunication.SERVER && tcpBuilder.getScenario() == null
+                && tcpBuilder.getScenarioImage() == null && tcpBuilder.getScenarioFrames() == null
+                && tcpBuilder.getScenarioFlow() == null) {
             throw new CreateInstanseException("Scenario should not be null when TypeSideCommunication = SERVER");
         }
 
+        if (tcpBuilder.getTypeSideCommunication() == TypeSideCommunication.SERVER
+                && (tcpBuilder.getScenario() != null ? 1 : 0) + (tcpBuilder.getScenarioImage() != null ? 1 : 0)
+                        + (tcpBuilder.getScenarioFrames() != null ? 1 : 0)
+                        + (tcpBuilder.getScenarioFlow() != null ? 1 : 0) > 1) {
+            throw new CreateInstanseException(
+                    "Only one of Scenario, ScenarioImage, ScenarioFrames and ScenarioFlow should be set");
+        }
+
         if (tcpBuilder.getTypeSideCommunication() == TypeSideCommunication.CLIENT
                 && tcpBuilder.getMessageFlowForNetwork() == null) {
             throw new CreateInstanseException(
@@ -209,184 +274,105 @@ public class TCP {
             throw new CreateInstanseException("Host should not be null when TypeSideCommunication = CLIENT");
         }
 
+        if (tcpBuilder.getOutboundQueueLowWatermark() < 0
+                || tcpBuilder.getOutboundQueueLowWatermark() >= tcpBuilder.getOutboundQueueHighWatermark()) {
+            throw new CreateInstanseException(
+                    "OutboundQueueLowWatermark should be at least zero and less than OutboundQueueHighWatermark");
+        }
+
         this.typeSideCommunication = tcpBuilder.getTypeSideCommunication();
 
-        this.statePhase = State.NEUTRAL;
+        this.preferDirectBuffer = tcpBuilder.isPreferDirectBuffer();
 
-        this.sinksStdIn = Sinks
-                // may have multiple subscribers
-                .many()
-                .multicast()
-                // if there are no subscribers messages are buffered
-                .onBackpressureBuffer(10);
+        this.establishmentTimer = requirePositive(tcpBuilder.getEstablishmentTimer(), "EstablishmentTimer");
+        this.senderTimer = requirePositive(tcpBuilder.getSenderTimer(), "SenderTimer");
+        this.receiverTimer = requirePositive(tcpBuilder.getReceiverTimer(), "ReceiverTimer");
+        this.busyTimer = requirePositive(tcpBuilder.getBusyTimer(), "BusyTimer");
+        this.contentionTimer = requirePositive(tcpBuilder.getContentionTimer(), "ContentionTimer");
+        this.scenarioPacing = requirePositive(tcpBuilder.getScenarioPacing(), "ScenarioPacing");
 
-        this.sinksStdOut = Sinks
-                // may have multiple subscribers
-                .many()
-                .multicast()
-                // if there are no subscribers messages are buffered
-                .onBackpressureBuffer(10);
+        if (tcpBuilder.getMaxMessagesPerTransfer() < 1) {
+            throw new CreateInstanseException("MaxMessagesPerTransfer should be at least 1");
+        }
+        this.maxMessagesPerTransfer = tcpBuilder.getMaxMessagesPerTransfer();
+
+        if (tcpBuilder.getMaxFrameAttempts() < 1) {
+            throw new CreateInstanseException("MaxFrameAttempts should be at least 1");
+        }
+        if (tcpBuilder.getMaxRequeues() < 0) {
+            throw new CreateInstanseException("MaxRequeues should not be negative");
+        }
+        this.maxFrameAttempts = tcpBuilder.getMaxFrameAttempts();
+        this.maxRequeues = tcpBuilder.getMaxRequeues();
+        this.requeueBackoff = requirePositive(tcpBuilder.getRequeueBackoff(), "RequeueBackoff");
+        this.maxRequeueBackoff = requirePositive(tcpBuilder.getMaxRequeueBackoff(), "MaxRequeueBackoff");
+
+        int maxTextLength = MAX_FRAME_SIZE - FrameEncoderASTM1381.FRAME_OVERHEAD;
+        if (tcpBuilder.getMaxFrameTextLength() < 1 || tcpBuilder.getMaxFrameTextLength() > maxTextLength) {
+            throw new CreateInstanseException(
+                    String.format("MaxFrameTextLength should be between 1 and %d", maxTextLength));
+        }
+        this.maxFrameTextLength = tcpBuilder.getMaxFrameTextLength();
+        this.alignFramesToRecords = tcpBuilder.isAlignFramesToRecords();
+
+        if (tcpBuilder.getCharset() == null) {
+            throw new CreateInstanseException("Charset should not be null");
+        }
+        this.charset = tcpBuilder.getCharset();
+
+        if (tcpBuilder.getEventLoopThreads() < 0) {
+            throw new CreateInstanseException("EventLoopThreads should not be negative");
+        }
+        this.loopResources = tcpBuilder.getLoopResources();
+        this.eventLoopThreads = tcpBuilder.getEventLoopThreads();
+
+        this.ownScheduler = tcpBuilder.getScheduler() == null;
+        this.scheduler = this.ownScheduler
+                ? newScheduler(tcpBuilder.getTypeSideCommunication())
+                : tcpBuilder.getScheduler();
 
-        this.sinksStdErr = Sinks
+        this.events = Sinks
                 // may have multiple subscribers
                 .many()
                 .multicast()
-                // if there are no subscribers messages are buffered
-                .onBackpressureBuffer(10);
+                // a slow subscriber makes events drop, they are counted
+                .onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false);
 
         if (this.typeSideCommunication == TypeSideCommunication.SERVER) {
             this.messageFlowFromNetwork = null;
             this.messageFlowForNetworkQueue = null;
 
-            this.abstractMessages = new ArrayList<>();
-
             this.scenario = tcpBuilder.getScenario();
 
-            List<String> linesScenario;
-            try {
-                linesScenario = Files.readAllLines(scenario, StandardCharsets.UTF_8);
-            } catch (IOException e1) {
-                throw new CreateInstanseException(String.format(
-                        "I/O error occurs reading from the file or a malformed or unmappable byte sequence is read (scenario %s)",
-                        scenario.toAbsolutePath().toString()));
-            }
-
-            String typeFrame = null;
-            String typeCrushing = null;
-            String typeNAK = null;
-            byte amountErrors = 0;
-            String charEndLine = null;
-
-            StringBuilder stringBuilder = null;
-
-            // reading scenario
-
-            for (int i = 0; i < linesScenario.size(); i++) {
-                String line = linesScenario.get(i);
-
-                if (line.charAt(0) == '@') {
-
-                    if (stringBuilder != null) {
-                        String message = stringBuilder.toString();
-
-                        if (typeFrame.equals("@send")) {
-
-                            abstractMessages.add(
-                                    SendFrameBuilder
-                                            .builder(message)
-                                            .setErrors(amountErrors)
-                                            .setCrushingType(Objects.nonNull(typeCrushing) && typeCrushing.equals(FULLY)
-                                                    ? CrushingType.FULLY
-                                                    : CrushingType.PARTS)
-                                            .build());
-
-                        } else if (typeFrame.equals("@receive")) {
-
-                            abstractMessages.add(
-                                    ReceiveFrameBuilder
-                                            .builder(message)
-                                            .setErrors(amountErrors)
-                                            .setNakStartCommunication(
-                                                    Objects.nonNull(typeNAK) && typeNAK.equals("withNAK")
-                                                            ? NAKStartCommunication.WITH_NAK
-                                                            : NAKStartCommunication.WITHOUT_NAK)
-                                            .build());
-
-                        }
-                        stringBuilder = null;
-                    }
-
-                    String[] metaDataFrame = line.split(" ");
-
-                    typeFrame = metaDataFrame[0];
-
-                    String flag1 = metaDataFrame[1];
-
-                    if (flag1.equals(FULLY) || flag1.equals("parts")) {
-                        typeCrushing = flag1;
-                    } else {
-                        typeNAK = flag1;
-                    }
-
-                    String errorFlag = metaDataFrame[2];
-
-                    if (errorFlag.equals("witherror")) {
-                        amountErrors = Byte.valueOf(metaDataFrame[3]);
-
-                        List<Byte> bytesEndLineList = Arrays.stream(metaDataFrame[4]
-                                .split("(?<=\\G.{2})"))
-                                .map(el -> Byte.valueOf(Integer.valueOf(el, 16).byteValue()))
-                                .collect(Collectors.toList());
-
-                        byte[] bytesEndLineArray = new byte[bytesEndLineList.size()];
-                        for (int k = 0; k < bytesEndLineList.size(); k++) {
-                            bytesEndLineArray[k] = bytesEndLineList.get(k).byteValue();
-                        }
-                        try {
-                            charEndLine = new String(bytesEndLineArray, "UTF-8").intern();
-                        } catch (UnsupportedEncodingException ex) {
-                            throw new CreateInstanseException("Encoding no support");
-                        }
-
-                    } else {
-                        amountErrors = (byte) -1;
-
-                        List<Byte> bytesEndLineList = Arrays.stream(metaDataFrame[3]
-                                .split("(?<=\\G.{2})"))
-                                .map(el -> Byte.valueOf(Integer.valueOf(el, 16).byteValue()))
-                                .collect(Collectors.toList());
-
-                        byte[] bytesEndLineArray = new byte[bytesEndLineList.size()];
-                        for (int k = 0; k < bytesEndLineList.size(); k++) {
-                            bytesEndLineArray[k] = bytesEndLineList.get(k).byteValue();
-                        }
-                        try {
-                            charEndLine = new String(bytesEndLineArray, "UTF-8").intern();
-                        } catch (UnsupportedEncodingException ex) {
-                            throw new CreateInstanseException("Encoding no support");
-                        }
-                    }
-
-                } else {
-                    if (typeFrame == null || charEndLine == null) {
-                        throw new CreateInstanseException(String.format("Error in line %d scenario %s", i + 1,
-                                scenario.toAbsolutePath().toString()));
-                    }
-
-                    if (stringBuilder == null) {
-                        stringBuilder = new StringBuilder();
-                    }
-                    stringBuilder.append(line.replaceAll("\r\n|\r|\n", "") + charEndLine);
+            if (tcpBuilder.getScenarioFrames() != null) {
+                this.scenarioFrames = Collections.unmodifiableList(new ArrayList<>(tcpBuilder.getScenarioFrames()));
+                if (this.scenarioFrames.contains(null)) {
+                    throw new CreateInstanseException("ScenarioFrames should not contain null");
                 }
-            }
-
-            if (stringBuilder != null) {
-                String message = stringBuilder.toString();
-
-                if (typeFrame.equals("@send")) {
-
-                    abstractMessages.add(
-                            SendFrameBuilder
-                                    .builder(message)
-                                    .setErrors(amountErrors)
-                                    .setCrushingType(Objects.nonNull(typeCrushing) && typeCrushing.equals(FULLY)
-                                            ? CrushingType.FULLY
-                                            : CrushingType.PARTS)
-                                    .build());
-
-                } else if (typeFrame.equals("@receive")) {
-
-                    abstractMessages.add(
-                            ReceiveFrameBuilder
-                                    .builder(message)
-                                    .setErrors(amountErrors)
-                                    .setNakStartCommunication(Objects.nonNull(typeNAK) && typeNAK.equals("withNAK")
-                                            ? NAKStartCommunication.WITH_NAK
-                                            : NAKStartCommunication.WITHOUT_NAK)
-                                    .build());
-
+            } else if (tcpBuilder.getScenarioFlow() != null) {
+                // read by every session as it goes
+                this.scenarioFlow = tcpBuilder.getScenarioFlow();
+            } else if (tcpBuilder.getScenarioImage() != null) {
+                // mapped once, its header is checked here and entries as sessions reach them
+                try {
+                    this.scenarioImage = ScenarioImage.open(tcpBuilder.getScenarioImage());
+                } catch (IOException e1) {
+                    throw new CreateInstanseException(String.format("I/O error occurs mapping the scenario image %s",
+                            tcpBuilder.getScenarioImage().toAbsolutePath().toString()));
+                } catch (CreateFrameException e1) {
+                    throw new CreateInstanseException(e1.getMessage());
+                }
+            } else {
+                // the scenario is read by every session as it goes, here its syntax is checked once
+                try {
+                    ScenarioReader.validate(this.scenario, this.charset);
+                } catch (IOException | UncheckedIOException e1) {
+                    throw new CreateInstanseException(String.format(
+                            "I/O error occurs reading from the file or a malformed or unmappable byte sequence is read (scenario %s)",
+                            scenario.toAbsolutePath().toString()));
+                } catch (CreateFrameException e1) {
+                    throw new CreateInstanseException(e1.getMessage());
                 }
-                stringBuilder = null;
             }
 
             this.tcpServer = TcpServer
@@ -395,35 +381,7 @@ public class TCP {
                     .doOnConnection(connection -> {
                         log.info("Connected client {}", connection.address());
 
-                        if (this.abstractMessages.isEmpty()) {
-                            stop();
-                        }
-
-                        if (!this.abstractMessages.isEmpty() && (this.abstractMessages.get(0) instanceof SendFrame)) {
-
-                            SendFrame sendFrame = (SendFrame) this.abstractMessages.get(0);
-                            this.currentCrushingType = sendFrame.getCrushingType();
-                            this.imitationErrorAmount = sendFrame.getErrors();
-                            this.currentSendMessageBytesSimulate = sendFrame.getFrame()
-                                    .getBytes(StandardCharsets.UTF_8);
-
-                            log.info(TRY_SEND_MESSAGE_TO_CLIENT, sendFrame.getFrame());
-
-                            try {
-                                Thread.sleep(1_000);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                                Thread.currentThread().interrupt();
-                            }
-
-                            this.abstractMessages.remove(0);
-
-                        }
-
-                        sendToRemoteSide(connection.outbound(), new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
-
-                        this.statePhase = State.ESTABLISHMENT_MYSELF;
-
+                        openSession(connection).start();
                     })
                     .handle(this::handlerOnePeer)
                     .wiretap(true);
@@ -437,845 +395,859 @@ public class TCP {
                     // if there are no subscribers messages are buffered
                     .onBackpressureBuffer();
 
-            this.messageFlowForNetworkQueue = new ConcurrentLinkedQueue<>();
-            tcpBuilder.getMessageFlowForNetwork()
-                    .publishOn(Schedulers.newSingle("Thread inserting into queue", true))
-                    .subscribe(
-                            el -> this.messageFlowForNetworkQueue.offer(el),
-                            ex -> log.error("Error inserting into queue", ex),
-                            () -> log.error("Complete inserting into queue"));
+            if (tcpBuilder.isStreamMessagesFromNetwork()) {
+                this.messageStreamsFromNetwork = Sinks
+                        // may have multiple subscribers
+                        .many()
+                        .multicast()
+                        // if there are no subscribers messages are buffered
+                        .onBackpressureBuffer();
+            }
 
-            this.tcpClient = TcpClient
-                    .create()
+            if (tcpBuilder.isEmitRecordsFromNetwork()) {
+                this.recordFlowFromNetwork = Sinks
+                        // may have multiple subscribers
+                        .many()
+                        .multicast()
+                        // if there are no subscribers records are buffered
+                        .onBackpressureBuffer();
+            }
+
+            this.messageFlowForNetworkQueue = new TCPOutboundQueue(tcpBuilder.getOutboundQueueHighWatermark(),
+                    tcpBuilder.getOutboundQueueLowWatermark(), this::wakeUpSessions);
+            tcpBuilder.getMessageFlowForNetwork().subscribe(this.messageFlowForNetworkQueue);
+
+            this.tcpClient = (tcpBuilder.getConnectionProvider() == null
+                    ? TcpClient.create()
+                    : TcpClient.create(tcpBuilder.getConnectionProvider()))
                     .host(tcpBuilder.getHost())
                     .port(tcpBuilder.getPort())
+                    .doOnConnected(connection -> {
+                        // the connection was being made when the client was stopped
+                        if (!this.isRunning) {
+                            connection.dispose();
+                            return;
+                        }
+                        openSession(connection).start();
+                    })
                     .handle(this::handlerOnePeer)
                     .wiretap(true);
 
         }
     }
 
+    /**
+     * <p>
+     * Start the server or client without blocking, {@link #isRunning()} becomes
+     * true once the server is bound (client: at once). The client connects
+     * again whenever the connection is closed until it is stopped.
+     * </p>
+     * <p>
+     * (Запустить сервер или клиент без блокировки, isRunning() становится
+     * true, когда сервер привязан (клиент: сразу). Клиент снова подключается
+     * при закрытии соединения, пока его не остановят.)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
     public synchronized void start() throws RuntimeInstanseException {
 
         try {
             if (this.typeSideCommunication == TypeSideCommunication.SERVER && this.disposableServer != null) {
                 throw new RuntimeInstanseException("Server is running");
             }
-            if (this.typeSideCommunication == TypeSideCommunication.CLIENT && this.connectionClient != null) {
+            if (this.typeSideCommunication == TypeSideCommunication.CLIENT
+                    && (this.connectionClient != null || this.isRunning)) {
                 throw new RuntimeInstanseException("Client is running");
             }
 
         } catch (Exception ex) {
 
-            EmitResult emitResult;
-
-            for (int i = 0; i < 5; i++) {
-                log.debug("Try {} pull frame to stderr", i + 1);
-
-                emitResult = this.sinksStdErr
-                        .tryEmitNext(String.format("error: %s phase: %s", ex.getMessage(), this.statePhase));
-
-                if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                    break;
-                } else {
-                    log.warn("Failed try {} pull frame to stderr ({}) ", i + 1, emitResult);
-                }
-            }
+            emitEvent(0, ProtocolEventKind.ERROR, null, ex.getMessage());
 
             throw ex;
         }
 
-        // starting a client or server blocks the main thread, so we run it in a
-        // separate thread
-        Thread startNettyThread = new Thread(() -> {
-
-            try {
-                if (this.typeSideCommunication == TypeSideCommunication.SERVER) {
-                    this.disposableServer = this.tcpServer.bindNow();
-                    this.isRunning = true;
-                    this.disposableServer.onDispose().block();
-                } else {
-                    this.isRunning = true;
-
-                    while (this.isRunning) {
-                        this.connectionClient = this.tcpClient.connectNow();
-                        this.connectionClient.onDispose().block();
-
-                        // try 5 time
-                        EmitResult emitResult;
-
-                        for (int i = 0; i < 5; i++) {
-                            log.debug("Try {} pull frame to stdin", i + 1);
-
-                            emitResult = this.sinksStdIn
-                                    .tryEmitNext("reconnecting to server");
-
-                            if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                                break;
-                            } else {
-                                log.warn("Failed try {} pull frame to stdin ({}) ", i + 1, emitResult);
-                            }
-                        }
-
-                        if (this.connectionClient != null) {
-                            this.connectionClient.channel().close();
-                        }
-                    }
-
-                }
-            } catch (Exception ex) {
-
-                isRunning = false;
-
-                EmitResult emitResult;
-
-                for (int i = 0; i < 5; i++) {
-                    log.debug("Try {} pull frame to stderr", i + 1);
-
-                    emitResult = this.sinksStdErr
-                            .tryEmitNext(String.format("error: %s phase: %s", ex.getMessage(), this.statePhase));
+        // the scheduler of a stopped TCP is disposed (планировщик остановленного TCP освобожден)
+        if (this.ownScheduler && this.scheduler.isDisposed()) {
+            this.scheduler = newScheduler(this.typeSideCommunication);
+        }
 
-                    if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                        break;
-                    } else {
-                        log.warn("Failed try {} pull frame to stderr ({}) ", i + 1, emitResult);
-                    }
-                }
+        LoopResources loops = loopResources();
 
-                throw ex;
+        if (this.typeSideCommunication == TypeSideCommunication.SERVER) {
+            this.starting = (loops == null ? this.tcpServer : this.tcpServer.runOn(loops))
+                    .bind()
+                    .subscribe(server -> {
+                        this.disposableServer = server;
+                        this.isRunning = true;
+                    }, this::handlerStartError);
+        } else {
+            if (loops != null) {
+                this.tcpClient = this.tcpClient.runOn(loops);
             }
+            this.isRunning = true;
+            connectClient();
+        }
+    }
 
-        });
-        startNettyThread.setName(String.format("Netty Start Thread TCP (%s)", this.typeSideCommunication));
-        startNettyThread.setDaemon(true);
-        startNettyThread.start();
+    /*
+     * Event loops to run on, null for the default ones of Reactor Netty shared by the JVM
+     * (Event loop'ы для работы, null для общих по умолчанию в Reactor Netty)
+     */
+    private LoopResources loopResources() {
+        if (this.loopResources != null || this.eventLoopThreads == 0) {
+            return this.loopResources;
+        }
+        if (this.ownLoopResources == null || this.ownLoopResources.isDisposed()) {
+            this.ownLoopResources = LoopResources.create(String.format("astm1381-%s", this.typeSideCommunication),
+                    this.eventLoopThreads, true);
+        }
+        return this.ownLoopResources;
     }
 
+    /**
+     * <p>
+     * Stop the server or client, also while the server is still binding. The
+     * scheduler created by TCP is disposed, subscriptions to the flows of TCP
+     * made before end with an error, subscribing again after
+     * {@link #start()} uses the new scheduler
+     * (Остановить сервер или клиент, также пока сервер еще привязывается.
+     * Планировщик, созданный TCP, освобождается, сделанные до этого подписки
+     * на потоки TCP завершаются ошибкой, новая подписка после start()
+     * использует новый планировщик)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
     public synchronized void stop() throws RuntimeInstanseException {
         try {
-            if (this.typeSideCommunication == TypeSideCommunication.SERVER && this.disposableServer == null) {
-                throw new RuntimeInstanseException("Server is not running");
+            if (isStopped()) {
+                throw new RuntimeInstanseException(
+                        this.typeSideCommunication == TypeSideCommunication.SERVER
+                                ? "Server is not running"
+                                : "Client is not running");
             }
-            if (this.typeSideCommunication == TypeSideCommunication.CLIENT && this.connectionClient == null) {
-                throw new RuntimeInstanseException("Client is not running");
+
+            // the client does not connect again
+            this.isRunning = false;
+
+            if (this.starting != null) {
+                this.starting.dispose();
+                this.starting = null;
             }
 
             if (this.typeSideCommunication == TypeSideCommunication.SERVER) {
-                this.disposableServer.channel().close();
-                this.disposableServer = null;
-                this.isRunning = false;
-            } else {
+                if (this.disposableServer != null) {
+                    this.disposableServer.channel().close();
+                    this.disposableServer = null;
+                }
+
+                // the accepted connections are not closed together with the server channel
+                for (TCPSession session : this.sessions) {
+                    session.dispose();
+                }
+            } else if (this.connectionClient != null) {
                 this.connectionClient.channel().close();
                 this.connectionClient = null;
-                this.isRunning = false;
             }
 
-        } catch (Exception ex) {
-
-            EmitResult emitResult;
+            if (this.ownScheduler) {
+                this.scheduler.dispose();
+            }
 
-            for (int i = 0; i < 5; i++) {
-                log.debug("Try {} pull frame to stderr", i + 1);
+            if (this.ownLoopResources != null) {
+                this.ownLoopResources.disposeLater().subscribe();
+            }
 
-                emitResult = this.sinksStdErr
-                        .tryEmitNext(String.format("error: %s phase: %s", ex.getMessage(), this.statePhase));
+        } catch (Exception ex) {
 
-                if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                    break;
-                } else {
-                    log.warn("Failed try {} pull frame to stderr ({}) ", i + 1, emitResult);
-                }
-            }
+            emitEvent(0, ProtocolEventKind.ERROR, null, ex.getMessage());
 
             throw ex;
         }
     }
 
-    public synchronized boolean isRunning() {
-        return this.isRunning;
-
+    /*
+     * Nothing to stop, a server may still be binding and a client connecting
+     * (Нечего останавливать, сервер может еще привязываться, а клиент подключаться)
+     */
+    synchronized boolean isStopped() {
+        return this.typeSideCommunication == TypeSideCommunication.SERVER
+                ? this.disposableServer == null && this.starting == null
+                : this.connectionClient == null && !this.isRunning;
     }
 
-    public Flux<byte[]> getMessageFlowFromNetwork() {
-        return messageFlowFromNetwork
-                .asFlux()
-                .publishOn(Schedulers.newSingle("Message flow from network thread", true));
+    /*
+     * Connect to the server, and again when the connection is closed
+     * (Подключиться к серверу и снова, когда соединение закрыто)
+     */
+    private void connectClient() {
+        this.starting = this.tcpClient
+                .connect()
+                .subscribe(connection -> {
+                    this.connectionClient = connection;
+
+                    connection.onDispose(() -> {
+                        if (this.isRunning) {
+                            emitEvent(0, ProtocolEventKind.RECONNECTING, null, null);
+                            connectClient();
+                        }
+                    });
+                }, this::handlerStartError);
     }
 
-    private void finalizeReceiveData() {
-        this.bufferReceiveData = null;
+    private void handlerStartError(Throwable ex) {
+        this.isRunning = false;
 
-        this.currentFrameNumberReceive = -1;
-    }
+        log.error(String.format("Error starting %s", this.typeSideCommunication), ex);
 
-    private void initSendData() {
+        emitEvent(0, ProtocolEventKind.ERROR, null, ex.getMessage());
+    }
 
-        this.currentFramesToSend = null;
-        this.indexCurrentFrameToSend = 0;
+    public synchronized boolean isRunning() {
+        return this.isRunning;
 
-        this.currentFrameNumberSend = 0;
     }
 
-    private void finalizeSendData() {
-        this.currentFramesToSend = null;
-        this.indexCurrentFrameToSend = -1;
+    /**
+     * <p>
+     * Messages waiting in the outbound queue, 0 for the server (Сообщений в очереди на отправку, 0 для сервера)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getOutboundQueueDepth() {
+        return this.messageFlowForNetworkQueue == null ? 0 : this.messageFlowForNetworkQueue.getDepth();
+    }
 
-        this.currentFrameNumberSend = -1;
+    /**
+     * <p>
+     * False from reaching the high watermark of the outbound queue until it
+     * falls to the low watermark, producers should slow down meanwhile
+     * (False с момента достижения верхней отметки очереди на отправку до
+     * падения до нижней, в это время производителям следует замедлиться)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isOutboundQueueWritable() {
+        return this.messageFlowForNetworkQueue == null || this.messageFlowForNetworkQueue.isWritable();
     }
 
-    private Publisher<Void> handlerOnePeer(NettyInbound inbound, NettyOutbound outbound) {
-        return inbound
-                .receive()
-                .timeout(Duration.ofSeconds(15))
-                .doOnNext(inByteBuf -> {
+    /**
+     * <p>
+     * Send a message to the remote side (client only). The message is queued
+     * on subscription, behind the messages already waiting, and the receipt
+     * is emitted when its outcome is known. Cancelling does not withdraw a
+     * queued message. While the outbound queue is not writable (see
+     * {@link #isOutboundQueueWritable()}) the message is refused with an error
+     * at once, the caller retries later.
+     * </p>
+     * <p>
+     * (Отправить сообщение удаленной стороне (только клиент). Сообщение
+     * ставится в очередь при подписке, после уже ожидающих, квитанция
+     * выдается, когда известен итог. Отмена не отзывает сообщение из очереди.
+     * Пока очередь на отправку недоступна для записи, сообщение сразу
+     * отклоняется с ошибкой, вызывающий повторяет позже.)
+     * </p>
+     *
+     * @param message - message for the remote side (сообщение для удаленной стороны)
+     * @return receipt of the message (квитанция о сообщении)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Mono<DeliveryReceipt> send(byte[] message) {
+        if (this.typeSideCommunication != TypeSideCommunication.CLIENT) {
+            return Mono.error(new RuntimeInstanseException("Only the client sends messages"));
+        }
+        if (message == null || message.length == 0) {
+            return Mono.error(new RuntimeInstanseException("Message should not be empty"));
+        }
 
-                    try {
-                        if (inByteBuf.readableBytes() == 1) {
-
-                            byte commandByte = inByteBuf.getByte(0);
-
-                            CommonCommandASTM1381 command = CommonCommandASTM1381.getCommonCommandByNumber(commandByte);
-                            if (command == CommonCommandASTM1381.NULL) {
-                                throw new RuntimeInstanseException(String.format("Unknown command received %s ",
-                                        new String(new byte[] { commandByte }, StandardCharsets.UTF_8)));
-                            }
-
-                            log.info("Command\r\nRECEIVED {}\r\n{}\r\n({} state is {})",
-                                    this.typeSideCommunication == TypeSideCommunication.SERVER ? CLIENT_TO_SERVER
-                                            : SERVER_TO_CLIENT,
-                                    command, this.typeSideCommunication, this.statePhase);
+        return Mono.create(sink -> offerMessageForNetwork(new OutboundMessage(message, sink), sink));
+    }
 
-                            // try 5 time
-                            EmitResult emitResult;
-
-                            for (int i = 0; i < 5; i++) {
-                                log.debug("Try {} pull frame to stdout", i + 1);
-
-                                emitResult = this.sinksStdOut
-                                        .tryEmitNext(String.format("command: %s phase: %s", command, this.statePhase));
+    /**
+     * <p>
+     * Send a message given as a stream of chunks (client only). The chunks
+     * are requested only when the message is being sent and framed as they
+     * arrive, the message is never held whole. A streamed message is not
+     * requeued after an abort. It is refused like {@link #send(byte[])} while
+     * the outbound queue is not writable.
+     * </p>
+     * <p>
+     * (Отправить сообщение, заданное потоком чанков (только клиент). Чанки
+     * запрашиваются только во время отправки сообщения и разбиваются на
+     * фреймы по мере поступления, сообщение целиком не хранится. Потоковое
+     * сообщение не возвращается в очередь после прерывания. Отклоняется, как
+     * send(byte[]), пока очередь на отправку недоступна для записи.)
+     * </p>
+     *
+     * @param chunks - chunks of the message, each is sent once (чанки сообщения, каждый отправляется один раз)
+     * @return receipt of the message (квитанция о сообщении)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Mono<DeliveryReceipt> send(Publisher<ByteBuffer> chunks) {
+        if (this.typeSideCommunication != TypeSideCommunication.CLIENT) {
+            return Mono.error(new RuntimeInstanseException("Only the client sends messages"));
+        }
+        if (chunks == null) {
+            return Mono.error(new RuntimeInstanseException("Chunks should not be null"));
+        }
 
-                                if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                                    break;
-                                } else {
-                                    log.warn("Failed try {} pull frame to stdout ({}) ", i + 1, emitResult);
-                                }
-                            }
+        return Mono.create(sink -> offerMessageForNetwork(new OutboundMessage(new OutboundStream(chunks), sink), sink));
+    }
 
-                            handlerCommand(outbound, command, this.typeSideCommunication);
+    /*
+     * The queue past its high watermark refuses messages of send, like
+     * MessageFlowForNetwork is not requested then
+     * (Очередь выше верхней отметки отклоняет сообщения send, как и
+     * MessageFlowForNetwork тогда не запрашивается)
+     */
+    private void offerMessageForNetwork(OutboundMessage message, MonoSink<DeliveryReceipt> sink) {
+        if (!this.messageFlowForNetworkQueue.offer(message)) {
+            sink.error(new RuntimeInstanseException(String.format(
+                    "Outbound queue reached the high watermark (%d messages), send later", getOutboundQueueDepth())));
+        }
+    }
 
-                        } else if (inByteBuf.readableBytes() > 1 && this.statePhase == State.TRANSFER_REMOTE_SIDE) {
-
-                            int readableBytes = inByteBuf.readableBytes();
-
-                            if (this.bufferReceiveData == null) {
-
-                                this.bufferReceiveData = new byte[readableBytes];
-                                inByteBuf.readBytes(this.bufferReceiveData, 0, readableBytes);
-
-                            } else {
-
-                                byte[] payload = new byte[inByteBuf.readableBytes()];
-                                inByteBuf.readBytes(payload, 0, readableBytes);
-
-                                byte[] receivedData = new byte[this.bufferReceiveData.length];
-                                System.arraycopy(this.bufferReceiveData, 0, receivedData, 0, receivedData.length);
-
-                                this.bufferReceiveData = new byte[receivedData.length + payload.length];
-                                System.arraycopy(receivedData, 0, this.bufferReceiveData, 0, receivedData.length);
-                                System.arraycopy(payload, 0, this.bufferReceiveData, receivedData.length,
-                                        payload.length);
-                            }
-
-                            String displayStr = CommonCommandASTM1381.displayCommandByte(
-                                    new String(this.bufferReceiveData, StandardCharsets.UTF_8).intern());
-
-                            log.info("Bytes\r\nRECEIVED {}\r\n{}\r\n({} state is {})",
-                                    this.typeSideCommunication == TypeSideCommunication.SERVER ? CLIENT_TO_SERVER
-                                            : SERVER_TO_CLIENT,
-                                    displayStr,
-                                    this.typeSideCommunication, this.statePhase);
-                            // try 5 time
-                            EmitResult emitResult;
-
-                            for (int i = 0; i < 5; i++) {
-                                log.debug("Try {} pull bytes to stdout", i + 1);
-
-                                emitResult = this.sinksStdOut
-                                        .tryEmitNext(String.format("bytes: %s phase: %s", displayStr, this.statePhase));
-
-                                if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                                    break;
-                                } else {
-                                    log.warn("Failed try {} pull bytes to stdout ({}) ", i + 1, emitResult);
-                                }
-                            }
-
-
-                            if(this.bufferReceiveData == null 
-                                || 
-                                CommonCommandASTM1381.getCommonCommandByNumber(this.bufferReceiveData[0]) != CommonCommandASTM1381.STX
-                                ||
-                                this.bufferReceiveData.length > MAX_FRAME_SIZE
-                            ){
-                                throw new RuntimeInstanseException(RECEIVED_NOISE);
-                            }
-
-                            if(this.bufferReceiveData.length > 8
-                                &&
-                                CommonCommandASTM1381.getCommonCommandByNumber(this.bufferReceiveData[0]) == CommonCommandASTM1381.STX
-                                &&
-                                CommonCommandASTM1381.getCommonCommandByNumber(this.bufferReceiveData[this.bufferReceiveData.length - 1]) == CommonCommandASTM1381.LF
-                                &&
-                                CommonCommandASTM1381.getCommonCommandByNumber(this.bufferReceiveData[this.bufferReceiveData.length - 2]) == CommonCommandASTM1381.CR
-                                &&
-                                (
-                                    CommonCommandASTM1381.getCommonCommandByNumber(this.bufferReceiveData[this.bufferReceiveData.length - 5]) == CommonCommandASTM1381.ETB
-                                    ||
-                                    CommonCommandASTM1381.getCommonCommandByNumber(this.bufferReceiveData[this.bufferReceiveData.length - 5]) == CommonCommandASTM1381.ETX
-                                )
-                            ) {
-
-                                // remove STX
-                                this.bufferReceiveData[0] = 0;
-
-                                // remove LF and CR
-                                this.bufferReceiveData[this.bufferReceiveData.length - 1] = 0;
-                                this.bufferReceiveData[this.bufferReceiveData.length - 2] = 0;
-
-                                byte c1 = this.bufferReceiveData[this.bufferReceiveData.length - 4];
-                                byte c2 = this.bufferReceiveData[this.bufferReceiveData.length - 3];
-
-                                // remove C1 and C2
-                                this.bufferReceiveData[this.bufferReceiveData.length - 4] = 0;
-                                this.bufferReceiveData[this.bufferReceiveData.length - 3] = 0;
-
-                                // remove ETB or ETX
-                                this.bufferReceiveData[this.bufferReceiveData.length - 5] = 0;
-
-                                byte[] checksum = calculateChecksun(this.bufferReceiveData);
-
-                                // check frame number
-                                byte frameNumber = nextFrameNumber(currentFrameNumberReceive);
-
-                                if (typeSideCommunication == TypeSideCommunication.SERVER
-                                        && this.imitationErrorAmount > 0) {
-                                    log.info("Imitation of an erroneous frame ({} state is {})",
-                                            this.typeSideCommunication, this.statePhase);
-
-                                    this.imitationErrorAmount--;
-
-                                    sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.NAK.getNumber() });
-
-                                } else if (checksum[0] == c1 && checksum[1] == c2
-                                        && (String.valueOf(frameNumber).getBytes()[0]) == this.bufferReceiveData[1]) {
-
-                                    sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ACK.getNumber() });
-
-                                    currentFrameNumberReceive = frameNumber;
-
-                                    if (this.bufferReceiveFramesData == null) {
-
-                                        this.bufferReceiveFramesData = new byte[this.bufferReceiveData.length - 7];
-                                        System.arraycopy(this.bufferReceiveData, 2, this.bufferReceiveFramesData, 0,
-                                                this.bufferReceiveFramesData.length);
-
-                                    } else {
-
-                                        byte[] payload = new byte[this.bufferReceiveData.length - 7];
-                                        System.arraycopy(this.bufferReceiveData, 2, payload, 0, payload.length);
-
-                                        byte[] receivedData = new byte[this.bufferReceiveFramesData.length];
-                                        System.arraycopy(this.bufferReceiveFramesData, 0, receivedData, 0,
-                                                receivedData.length);
-
-                                        this.bufferReceiveFramesData = new byte[receivedData.length + payload.length];
-                                        System.arraycopy(receivedData, 0, this.bufferReceiveFramesData, 0,
-                                                receivedData.length);
-                                        System.arraycopy(payload, 0, this.bufferReceiveFramesData, receivedData.length,
-                                                payload.length);
-                                    }
-
-                                } else {
-                                    log.info("The message has an invalid checksum ({} state is {})",
-                                            this.typeSideCommunication, this.statePhase);
-
-                                    sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.NAK.getNumber() });
-                                }
-                                this.bufferReceiveData = null;
-                            }
+    /**
+     * <p>
+     * Send a message read from a stream (client only). The stream is read on
+     * a blocking-friendly scheduler while the message is being sent and
+     * closed at the end, also if the message is refused or given up before
+     * it is read. Until the receipt is subscribed the caller keeps the stream
+     * (Отправить сообщение, читаемое из потока (только клиент). Поток
+     * читается в планировщике для блокирующих операций во время отправки
+     * сообщения и закрывается в конце, также если сообщение отклонено или от
+     * него отказались до чтения. Пока на квитанцию не подписались, поток
+     * остается у вызывающего)
+     * </p>
+     *
+     * @param message - stream of the message (поток сообщения)
+     * @return receipt of the message (квитанция о сообщении)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Mono<DeliveryReceipt> send(InputStream message) {
+        if (message == null) {
+            return Mono.error(new RuntimeInstanseException("Stream should not be null"));
+        }
 
+        Flux<ByteBuffer> chunks = Flux.using(
+                () -> message,
+                in -> Flux.<ByteBuffer>generate(sink -> {
+                    byte[] chunk = new byte[INPUT_STREAM_CHUNK_SIZE];
+                    try {
+                        int read = in.read(chunk);
+                        if (read < 0) {
+                            sink.complete();
                         } else {
-
-                            byte[] invalidFrame = new byte[inByteBuf.readableBytes()];
-                            inByteBuf.readBytes(invalidFrame);
-
-                            throw new RuntimeInstanseException(
-                                    String.format("It is not known what to do with the received frame%n%s%n",
-                                            new String(invalidFrame, StandardCharsets.UTF_8)));
-                        }
-
-                    } catch (Exception ex) {
-                        log.error(String.format("doOnError (%s state is %s)", this.typeSideCommunication,
-                                this.statePhase), ex);
-
-                        // try 5 time
-                        EmitResult emitResult;
-
-                        for (int i = 0; i < 5; i++) {
-                            log.debug("Try {} pull frame to stderr", i + 1);
-
-                            emitResult = this.sinksStdErr.tryEmitNext(
-                                    String.format("error: %s phase: %s", ex.getMessage(), this.statePhase));
-
-                            if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                                break;
-                            } else {
-                                log.warn("Failed try {} pull frame to stderr ({}) ", i + 1, emitResult);
-                            }
+                            sink.next(ByteBuffer.wrap(chunk, 0, read));
                         }
-
-                        try {
-                            Thread.sleep(2_000);
-                        } catch (InterruptedException e1) {
-                            e1.printStackTrace();
-                            Thread.currentThread().interrupt();
-                        }
-
-                        this.statePhase = State.NEUTRAL;
-
-                        sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.EOT.getNumber() });
+                    } catch (IOException ex) {
+                        sink.error(ex);
                     }
-
-                })
-                .then();
+                }),
+                TCP::closeMessageStream);
+
+        // read on the scheduler of the moment the message is sent,
+        // a cancelled receipt leaves the message queued and the stream open
+        return send(Flux.defer(() -> chunks.subscribeOn(this.scheduler)))
+                .doFinally(signal -> {
+                    if (signal != SignalType.CANCEL) {
+                        closeMessageStream(message);
+                    }
+                });
     }
 
-    private void handlerCommand(NettyOutbound outbound, CommonCommandASTM1381 command,
-            TypeSideCommunication typeSideCommunication) {
-
-        if (CommonCommandASTM1381.ENQ == command && this.statePhase == State.NEUTRAL
-                && typeSideCommunication == TypeSideCommunication.SERVER) {
-
-            if (!this.abstractMessages.isEmpty() && (this.abstractMessages.get(0) instanceof SendFrame)) {
-
-                SendFrame sendFrame = (SendFrame) this.abstractMessages.get(0);
-                this.currentCrushingType = sendFrame.getCrushingType();
-                this.imitationErrorAmount = sendFrame.getErrors();
-                this.currentSendMessageBytesSimulate = sendFrame.getFrame().getBytes(StandardCharsets.UTF_8);
-
-                log.info(TRY_SEND_MESSAGE_TO_CLIENT, sendFrame.getFrame());
-
-                try {
-                    Thread.sleep(1_000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                    Thread.currentThread().interrupt();
-                }
-                this.statePhase = State.ESTABLISHMENT_MYSELF;
-
-                sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
-
-                this.abstractMessages.remove(0);
-
-            } else if (!this.abstractMessages.isEmpty() && (this.abstractMessages.get(0) instanceof ReceiveFrame)) {
-
-                ReceiveFrame receiveFrame = (ReceiveFrame) this.abstractMessages.get(0);
-
-                CommonCommandASTM1381 ackOrNak;
-
-                if (receiveFrame.getNakStartCommunication() == NAKStartCommunication.WITH_NAK) {
-                    this.statePhase = State.ESTABLISHMENT_REMOTE_SIDE;
-                    ackOrNak = CommonCommandASTM1381.NAK;
-                } else {
-                    this.statePhase = State.TRANSFER_REMOTE_SIDE;
-                    this.currentFrameNumberReceive = 0;
-                    ackOrNak = CommonCommandASTM1381.ACK;
-
-                }
-
-                sendToRemoteSide(outbound, new byte[] { ackOrNak.getNumber() });
-
-                this.imitationErrorAmount = receiveFrame.getErrors();
-                this.shouldBeReceiveStr = receiveFrame.getFrame();
-
-                this.abstractMessages.remove(0);
-
-            } else {
-                sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ACK.getNumber() });
-                this.statePhase = State.TRANSFER_REMOTE_SIDE;
-                this.currentFrameNumberReceive = 0;
-
-            }
-
-        } else if (CommonCommandASTM1381.ENQ == command
-                && ((this.statePhase == State.NEUTRAL && this.typeSideCommunication == TypeSideCommunication.CLIENT)
-                        ||
-                        (this.statePhase == State.ESTABLISHMENT_MYSELF
-                                && this.typeSideCommunication == TypeSideCommunication.CLIENT)
-                        ||
-                        (this.statePhase == State.ESTABLISHMENT_REMOTE_SIDE
-                                && this.typeSideCommunication == TypeSideCommunication.SERVER)
-                        ||
-                        (this.statePhase == State.ESTABLISHMENT_REMOTE_SIDE
-                                && this.typeSideCommunication == TypeSideCommunication.CLIENT))) {
-
-            this.statePhase = State.TRANSFER_REMOTE_SIDE;
-            this.currentFrameNumberReceive = 0;
-
-            sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ACK.getNumber() });
-
-        } else if (CommonCommandASTM1381.ENQ == command && statePhase == State.ESTABLISHMENT_MYSELF
-                && this.typeSideCommunication == TypeSideCommunication.SERVER) {
-
-            try {
-                Thread.sleep(1_000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-                Thread.currentThread().interrupt();
-            }
-
-            sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
-
-        } else if (CommonCommandASTM1381.ACK == command && statePhase == State.ESTABLISHMENT_MYSELF) {
-
-            initSendData();
-
-            this.statePhase = State.TRANSFER_MYSELF;
-
-            // some bytes from external environment to send
-            byte[] byteForSendRemoteSide = null;
+    /*
+     * Closing a closed stream has no effect (Закрытие закрытого потока ни на что не влияет)
+     */
+    private static void closeMessageStream(InputStream message) {
+        try {
+            message.close();
+        } catch (IOException ex) {
+            log.warn("Error closing the stream of a message", ex);
+        }
+    }
 
-            int maxFrameSize = 0;
+    /**
+     * <p>
+     * Messages from the network as streams of payload chunks, one chunk per
+     * accepted frame (client, see {@link TCPBuilder#setStreamMessagesFromNetwork(boolean)}).
+     * A message stream ends with an error if the message is not completed.
+     * </p>
+     * <p>
+     * (Сообщения из сети как потоки чанков данных, один чанк на принятый
+     * фрейм. Поток сообщения завершается ошибкой, если сообщение не
+     * завершено.)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Flux<Flux<ByteBuffer>> getMessageStreamsFromNetwork() {
+        if (this.messageStreamsFromNetwork == null) {
+            return Flux.error(new RuntimeInstanseException("Messages are not streamed"));
+        }
+        return this.messageStreamsFromNetwork.asFlux();
+    }
 
-            try {
-                if (typeSideCommunication == TypeSideCommunication.SERVER) {
-                    maxFrameSize = currentCrushingType == CrushingType.PARTS ? MAX_FRAME_SIZE_FOR_SIMULATE
-                            : currentSendMessageBytesSimulate.length;
+    /**
+     * <p>
+     * Records (H, P, O, R ... up to and including CR) from the network, each
+     * one as soon as the frame completing it is accepted, before ETX of the
+     * message (client, see {@link TCPBuilder#setEmitRecordsFromNetwork(boolean)}).
+     * Records of a message that is later discarded are already emitted.
+     * </p>
+     * <p>
+     * (Записи из сети, каждая сразу после приема фрейма, который ее
+     * завершает, до ETX сообщения. Записи сообщения, которое затем
+     * отбрасывается, уже выданы.)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Flux<byte[]> getRecordFlowFromNetwork() {
+        if (this.recordFlowFromNetwork == null) {
+            return Flux.error(new RuntimeInstanseException("Records are not emitted"));
+        }
+        return this.recordFlowFromNetwork.asFlux();
+    }
 
-                    byteForSendRemoteSide = this.currentSendMessageBytesSimulate;
-                } else {
-                    maxFrameSize = MAX_FRAME_SIZE;
+    /**
+     * <p>
+     * Events of the protocol: commands and frames sent and received, received
+     * messages, errors and timeouts. Events are created only while there are
+     * subscribers, events a slow subscriber cannot take are dropped and
+     * counted by {@link #getDroppedEvents()}.
+     * </p>
+     * <p>
+     * (События протокола: отправленные и принятые команды и фреймы, принятые
+     * сообщения, ошибки и таймауты. События создаются, только пока есть
+     * подписчики, события, которые не успевает взять медленный подписчик,
+     * отбрасываются и считаются.)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Flux<ProtocolEvent> getEvents() {
+        return this.events.asFlux();
+    }
 
-                    byteForSendRemoteSide = this.messageFlowForNetworkQueue.poll();
-                }
+    /**
+     * <p>
+     * Events dropped because of slow subscribers (Событий, отброшенных из-за медленных подписчиков)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public long getDroppedEvents() {
+        return this.droppedEvents.sum();
+    }
 
-                if (byteForSendRemoteSide == null) {
-                    throw new RuntimeInstanseException("Bytes for send is null");
-                }
+    /**
+     * <p>
+     * How many times the command was received in the phase, by all sessions
+     * (Сколько раз команда была принята в фазе, всеми сессиями).
+     * See {@link TransitionTableASTM1381} for what was done.
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public long getTransitionCount(State state, CommonCommandASTM1381 command) {
+        return this.transitionCounters[transitionIndex(state, command)].sum();
+    }
 
-            } catch (Exception ex) {
-                throw new RuntimeInstanseException("Nothing to send", ex);
-            }
+    /**
+     * <p>
+     * Messages of the client aborted after too many retransmits or a timeout,
+     * aborted scenario messages of the server are not counted
+     * (Сообщений клиента, прерванных после слишком большого числа повторов
+     * или таймаута, прерванные сообщения сценария сервера не считаются)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public long getAbortedMessages() {
+        return this.abortedMessages.sum();
+    }
 
-            if (byteForSendRemoteSide.length > maxFrameSize) {
-                int amountFrame = (byteForSendRemoteSide.length / maxFrameSize) + 1;
-                this.currentFramesToSend = new byte[amountFrame][];
+    /**
+     * <p>
+     * Aborted messages put back into the queue (Прерванных сообщений, возвращенных в очередь)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public long getRequeuedMessages() {
+        return this.requeuedMessages.sum();
+    }
 
-                log.debug("byteForSendRemoteSide.length = {} , maxFrameSize = {}, amountFrame = {}",
-                        byteForSendRemoteSide.length, maxFrameSize, amountFrame);
+    public Flux<byte[]> getMessageFlowFromNetwork() {
+        return publishOnScheduler(messageFlowFromNetwork.asFlux());
+    }
 
-                for (int i = 0; i < amountFrame; i++) {
+    /*
+     * The scheduler is taken on subscription, not when the flow is built: a
+     * flow obtained before the TCP was stopped and started again is
+     * subscribed to on the new scheduler
+     * (Планировщик берется при подписке, а не при построении потока: на
+     * поток, полученный до остановки и нового запуска TCP, подписываются в
+     * новом планировщике)
+     */
+    private <T> Flux<T> publishOnScheduler(Flux<T> flux) {
+        return Flux.defer(() -> flux.publishOn(this.scheduler));
+    }
 
-                    int len = (maxFrameSize * (i + 1)) <= byteForSendRemoteSide.length ? maxFrameSize
-                            : byteForSendRemoteSide.length % maxFrameSize;
+    /*
+     * A new remote side is connected: the frame decoder is added to the pipeline
+     * and a fresh session is bound to the channel
+     * (Подключилась новая удаленная сторона: в pipeline добавляется декодер
+     * фреймов, к каналу привязывается новая сессия)
+     */
+    private TCPSession openSession(Connection connection) {
+        connection.addHandlerLast(FRAME_DECODER, new FrameDecoderASTM1381(MAX_FRAME_SIZE));
 
-                    boolean isEndFrame = byteForSendRemoteSide.length <= (maxFrameSize * (i + 1));
+        TCPSession session = new TCPSession(this, connection, this.sessionNumbers.incrementAndGet());
+        connection.channel().attr(TCPSession.SESSION).set(session);
 
-                    log.debug("i = {}, len = {}, isEndFrame = {}", i, len, isEndFrame);
+        this.sessions.add(session);
 
-                    byte[] frame = new byte[len];
-                    System.arraycopy(byteForSendRemoteSide, maxFrameSize * i, frame, 0, len);
+        connection.onDispose(() -> {
+            this.sessions.remove(session);
+            session.close();
+        });
 
-                    this.currentFramesToSend[i] = createFrame(frame, isEndFrame);
+        return session;
+    }
 
-                }
-            } else {
-                this.currentFramesToSend = new byte[1][];
-                this.currentFramesToSend[0] = createFrame(byteForSendRemoteSide, true);
+    /*
+     * Whether the session with the number is still connected (Подключена ли еще сессия с номером)
+     */
+    boolean isSessionOpen(int number) {
+        for (TCPSession session : this.sessions) {
+            if (session.getNumber() == number) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            this.sendCurrentFrameToRemoteSide(outbound);
-            numberOfAttemptsToSendMessage = 1;
-
-        } else if (CommonCommandASTM1381.ACK == command && this.statePhase == State.TRANSFER_MYSELF) {
-
-            this.indexCurrentFrameToSend++;
-
-            if (this.indexCurrentFrameToSend >= this.currentFramesToSend.length) {
-
-                this.statePhase = State.NEUTRAL;
-
-                sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.EOT.getNumber() });
-
-            } else {
-                this.sendCurrentFrameToRemoteSide(outbound);
-                numberOfAttemptsToSendMessage = 1;
-            }
+    private Publisher<Void> handlerOnePeer(NettyInbound inbound, NettyOutbound outbound) {
+        TCPSession[] session = new TCPSession[1];
+        inbound.withConnection(connection -> session[0] = connection.channel().attr(TCPSession.SESSION).get());
 
-        } else if (CommonCommandASTM1381.NAK == command && this.statePhase == State.ESTABLISHMENT_MYSELF) {
+        return inbound
+                .receive()
+                .doOnNext(inByteBuf -> session[0].handlerReceived(inByteBuf))
+                .then();
+    }
 
-            try {
-                Thread.sleep(10_000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-                Thread.currentThread().interrupt();
-            }
-            sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
+    void countTransition(State state, CommonCommandASTM1381 command) {
+        this.transitionCounters[transitionIndex(state, command)].increment();
+    }
 
-        } else if (CommonCommandASTM1381.NAK == command && this.statePhase == State.TRANSFER_MYSELF) {
+    private static int transitionIndex(State state, CommonCommandASTM1381 command) {
+        return state.ordinal() * CommonCommandASTM1381.values().length + command.ordinal();
+    }
 
-            /*
-             * 6.5.1.2 Upon receiving a <NAK> or any character except an <ACK> or <EOT> (a
-             * <NAK> condition), the
-             * sender increments a retransmit counter and retransmits the frame. If this
-             * counter shows a single frame was sent and
-             * not accepted six times, the sender must abort this message by proceeding to
-             * the termination phase. An abort should
-             * be extremely rare, but it provides a mechanism to escape from a condition
-             * where the transfer phase cannot continue.
-             */
+    private static LongAdder[] newTransitionCounters() {
+        LongAdder[] counters = new LongAdder[State.values().length * CommonCommandASTM1381.values().length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
 
-            if (numberOfAttemptsToSendMessage >= 6) {
+    private static Scheduler newScheduler(TypeSideCommunication typeSideCommunication) {
+        return Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, String.format("TCP (%s)", typeSideCommunication),
+                60, true);
+    }
 
-                log.info("Too much retransmits the frame");
+    private static Duration requirePositive(Duration duration, String name) {
+        if (duration == null || duration.isNegative() || duration.isZero()) {
+            throw new CreateInstanseException(String.format("%s should be positive", name));
+        }
+        return duration;
+    }
 
-                this.statePhase = State.NEUTRAL;
+    TypeSideCommunication getTypeSideCommunication() {
+        return this.typeSideCommunication;
+    }
 
-                sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.EOT.getNumber() });
+    boolean isPreferDirectBuffer() {
+        return this.preferDirectBuffer;
+    }
 
-            } else {
-                this.sendCurrentFrameToRemoteSide(outbound, true);
-                numberOfAttemptsToSendMessage++;
-            }
+    Duration getEstablishmentTimer() {
+        return this.establishmentTimer;
+    }
 
-        } else if (CommonCommandASTM1381.EOT == command) {
+    Duration getSenderTimer() {
+        return this.senderTimer;
+    }
 
-            if (this.bufferReceiveFramesData != null) {
+    Duration getReceiverTimer() {
+        return this.receiverTimer;
+    }
 
-                String currentReceiveStr = new String(this.bufferReceiveFramesData, StandardCharsets.UTF_8).intern();
+    Duration getBusyTimer() {
+        return this.busyTimer;
+    }
 
-                log.info("Message\r\nRECEIVED {}\r\n{}\r\n({} state is {})",
-                        this.typeSideCommunication == TypeSideCommunication.SERVER ? CLIENT_TO_SERVER
-                                : SERVER_TO_CLIENT,
-                        CommonCommandASTM1381.displayCommandByte(currentReceiveStr), this.typeSideCommunication,
-                        this.statePhase);
+    Duration getContentionTimer() {
+        return this.contentionTimer;
+    }
 
-                if (this.typeSideCommunication == TypeSideCommunication.SERVER && this.shouldBeReceiveStr != null) {
+    Duration getScenarioPacing() {
+        return this.scenarioPacing;
+    }
 
-                    log.info("Received message on CLIENT is {} expected ",
-                            this.shouldBeReceiveStr.equals(currentReceiveStr)
-                                    ? "EQUAL"
-                                    : "NOT the same as");
-                } else if (this.typeSideCommunication == TypeSideCommunication.CLIENT) {
+    int getMaxMessagesPerTransfer() {
+        return this.maxMessagesPerTransfer;
+    }
 
-                    EmitResult emitResult = null;
+    int getMaxFrameTextLength() {
+        return this.maxFrameTextLength;
+    }
 
-                    // try 5 time
-                    for (int i = 0; i < 5; i++) {
-                        log.debug("Try {} pull received message", i + 1);
+    boolean isAlignFramesToRecords() {
+        return this.alignFramesToRecords;
+    }
 
-                        emitResult = this.messageFlowFromNetwork.tryEmitNext(this.bufferReceiveFramesData);
+    Charset getCharset() {
+        return this.charset;
+    }
 
-                        if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                            break;
-                        } else {
-                            log.warn("Failed try {} pull received message ({}) ", i + 1, emitResult);
-                        }
-                    }
+    int getMaxFrameAttempts() {
+        return this.maxFrameAttempts;
+    }
 
-                    if (emitResult != EmitResult.OK && emitResult.isFailure()) {
-                        log.error("Failed pull received message",
-                                new RuntimeInstanseException("Failed pull received message"));
-                    }
+    /*
+     * The transfer of the message of the client is aborted: it is put back at
+     * the head of the queue after an exponential back-off while requeues are
+     * left. Returns false if the message is given up.
+     * (Передача сообщения клиента прервана: оно возвращается в начало очереди
+     * после экспоненциальной задержки, пока остаются попытки. Возвращает
+     * false, если от сообщения отказались.)
+     */
+    boolean abortAndRequeue(OutboundMessage message, ScheduledExecutorService executor) {
+        if (message == null) {
+            return false;
+        }
 
-                    log.debug("Pulled received message");
-                }
+        this.abortedMessages.increment();
 
-                this.bufferReceiveFramesData = null;
-            }
+        if (!message.isReplayable() || message.getRequeues() >= this.maxRequeues) {
+            return false;
+        }
 
-            finalizeReceiveData();
-            finalizeSendData();
+        int requeues = message.incrementRequeues();
 
-            if (this.typeSideCommunication == TypeSideCommunication.SERVER
-                    && this.statePhase == State.TRANSFER_REMOTE_SIDE) {
+        // doubled per requeue, clamped before the shift would overflow
+        long baseMillis = this.requeueBackoff.toMillis();
+        long maxMillis = this.maxRequeueBackoff.toMillis();
+        long backoffMillis = requeues - 1 >= Long.numberOfLeadingZeros(baseMillis) - 1
+                ? maxMillis
+                : Math.min(baseMillis << (requeues - 1), maxMillis);
 
-                currentSendMessageBytesSimulate = null;
-                imitationErrorAmount = -1;
-                shouldBeReceiveStr = null;
+        log.info("Message is put back into the queue in {} ms (requeue {} of {})", backoffMillis, requeues,
+                this.maxRequeues);
 
-                if (!this.abstractMessages.isEmpty() && this.abstractMessages.get(0) instanceof SendFrame) {
+        this.requeuedMessages.increment();
 
-                    SendFrame sendFrame = (SendFrame) this.abstractMessages.get(0);
-                    this.currentCrushingType = sendFrame.getCrushingType();
-                    this.imitationErrorAmount = sendFrame.getErrors();
-                    this.currentSendMessageBytesSimulate = sendFrame.getFrame().getBytes(StandardCharsets.UTF_8);
+        executor.schedule(() -> this.messageFlowForNetworkQueue.requeue(message), backoffMillis,
+                TimeUnit.MILLISECONDS);
 
-                    log.info(TRY_SEND_MESSAGE_TO_CLIENT, sendFrame.getFrame());
+        return true;
+    }
 
-                    try {
-                        Thread.sleep(1_000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                        Thread.currentThread().interrupt();
-                    }
+    /*
+     * Messages are queued, the sessions bid for the line if it is neutral
+     * (Сообщения в очереди, сессии претендуют на линию, если она нейтральна)
+     */
+    private void wakeUpSessions() {
+        for (TCPSession session : this.sessions) {
+            session.wakeUp();
+        }
+    }
 
-                    this.abstractMessages.remove(0);
+    /*
+     * Every session of the server reads the scenario from the start
+     * (Каждая сессия сервера читает сценарий с начала)
+     */
+    ScenarioCursor openScenario() {
+        if (this.scenarioFrames != null) {
+            return new ScenarioList(this.scenarioFrames);
+        }
+        if (this.scenarioFlow != null) {
+            return new ScenarioFlow(this.scenarioFlow);
+        }
+        if (this.scenarioImage != null) {
+            return this.scenarioImage.cursor();
+        }
+        try {
+            return ScenarioReader.open(this.scenario, this.charset);
+        } catch (IOException ex) {
+            throw new RuntimeInstanseException(String.format("Scenario %s cannot be read",
+                    this.scenario.toAbsolutePath().toString()), ex);
+        }
+    }
 
-                    sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
+    OutboundMessage pollMessageForNetwork() {
+        return this.messageFlowForNetworkQueue.poll();
+    }
 
-                    this.statePhase = State.ESTABLISHMENT_MYSELF;
+    void emitMessageFromNetwork(byte[] message) {
+        EmitResult emitResult = null;
 
-                } else if (this.abstractMessages.isEmpty()) {
+        // several sessions may emit at once, the sink requires serialized calls
+        synchronized (this.messageFlowFromNetwork) {
+            // try 5 time
+            for (int i = 0; i < 5; i++) {
+                log.debug("Try {} pull received message", i + 1);
 
-                    stop();
+                emitResult = this.messageFlowFromNetwork.tryEmitNext(message);
 
+                if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
+                    break;
                 } else {
-
-                    sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.EOT.getNumber() });
-
-                    this.statePhase = State.NEUTRAL;
+                    log.warn("Failed try {} pull received message ({}) ", i + 1, emitResult);
                 }
-
-            } else {
-                sendToRemoteSide(outbound, new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
-
-                this.statePhase = State.ESTABLISHMENT_MYSELF;
             }
+        }
 
-        } else {
-            throw new RuntimeInstanseException(String.format("Unable to execute received command %s", command));
+        if (emitResult != EmitResult.OK && emitResult.isFailure()) {
+            log.error("Failed pull received message",
+                    new RuntimeInstanseException("Failed pull received message"));
         }
-    }
 
-    private byte nextFrameNumber(byte currentFrameNumber) {
-        currentFrameNumber = (byte) ((currentFrameNumber + 1) % 8);
-        return currentFrameNumber;
+        log.debug("Pulled received message");
     }
 
-    private byte[] createFrame(byte[] payload, boolean isEndFrame) {
-
-        byte[] frame = new byte[payload.length + 7];
-        System.arraycopy(payload, 0, frame, 2, payload.length);
-
-        currentFrameNumberSend = nextFrameNumber(currentFrameNumberSend);
-
-        frame[1] = String.valueOf(currentFrameNumberSend).getBytes()[0];
-        frame[frame.length - 5] = isEndFrame ? CommonCommandASTM1381.ETX.getNumber()
-                : CommonCommandASTM1381.ETB.getNumber();
-
-        // checksum
-        byte[] checksum = calculateChecksun(frame);
-        // C1
-        frame[frame.length - 4] = checksum[0];
-        // C2
-        frame[frame.length - 3] = checksum[1];
+    boolean isStreamMessagesFromNetwork() {
+        return this.messageStreamsFromNetwork != null;
+    }
 
-        frame[0] = CommonCommandASTM1381.STX.getNumber();
-        frame[frame.length - 2] = CommonCommandASTM1381.CR.getNumber();
-        frame[frame.length - 1] = CommonCommandASTM1381.LF.getNumber();
+    void emitMessageStreamFromNetwork(Flux<ByteBuffer> chunks) {
+        emit(this.messageStreamsFromNetwork, "message streams", chunks);
+    }
 
-        return frame;
+    boolean isEmitRecordsFromNetwork() {
+        return this.recordFlowFromNetwork != null;
     }
 
-    private byte[] calculateChecksun(byte[] data) {
+    void emitRecordFromNetwork(byte[] record) {
+        emit(this.recordFlowFromNetwork, "records", record);
+    }
 
-        return String
-                .format("%02X",
-                        IntStream
-                                .range(0, data.length)
-                                .map(index -> data[index] & 255)
-                                .reduce(0, Integer::sum)
-                                % 256)
-                .intern()
-                .getBytes();
+    /*
+     * A listener gets every event on the thread that emits it, unlike a slow
+     * subscriber of getEvents(), so it must not block
+     * (Слушатель получает каждое событие в потоке, который его выпустил, в
+     * отличие от медленного подписчика getEvents(), поэтому не должен блокировать)
+     */
+    void addEventListener(Consumer<ProtocolEvent> listener) {
+        this.eventListeners.add(listener);
     }
 
-    private void sendToRemoteSide(NettyOutbound outbound, byte[] sendData) {
+    void removeEventListener(Consumer<ProtocolEvent> listener) {
+        this.eventListeners.remove(listener);
+    }
 
-        String displayStr;
+    private boolean isListened() {
+        return this.events.currentSubscriberCount() > 0 || !this.eventListeners.isEmpty();
+    }
 
-        if (sendData.length == 1) {
-            displayStr = CommonCommandASTM1381.getCommonCommandByNumber(sendData[0]).toString().intern();
-        } else {
-            displayStr = CommonCommandASTM1381
-                    .displayCommandByte(new String(sendData, StandardCharsets.UTF_8).intern());
+    /*
+     * Events are created only if someone listens, the payload is copied then
+     * (События создаются, только если их слушают, тогда же копируются данные)
+     */
+    void emitEvent(int session, ProtocolEventKind kind, Direction direction, State state, ByteBuf data) {
+        if (!isListened()) {
+            return;
         }
+        byte[] payload = new byte[data.readableBytes()];
+        data.getBytes(data.readerIndex(), payload);
+        publish(new ProtocolEvent(session, kind, direction, state, payload, this.charset, null));
+    }
 
-        log.info("{}\r\n{} SENT\r\n{}\r\n({} state is {})", sendData.length == 1 ? "command" : "frame",
-                this.typeSideCommunication == TypeSideCommunication.SERVER ? SERVER_TO_CLIENT : CLIENT_TO_SERVER,
-                displayStr, this.typeSideCommunication, this.statePhase);
-
-        // try 5 time
-        EmitResult emitResult;
-
-        for (int i = 0; i < 5; i++) {
-            log.debug("Try {} pull frame to stdin", i + 1);
+    void emitEvent(int session, ProtocolEventKind kind, Direction direction, State state, byte[] payload) {
+        if (!isListened()) {
+            return;
+        }
+        publish(new ProtocolEvent(session, kind, direction, state, payload, this.charset, null));
+    }
 
-            emitResult = this.sinksStdIn.tryEmitNext(String.format("frame: %s phase: %s", displayStr, this.statePhase));
+    void emitEvent(int session, ProtocolEventKind kind, State state, String message) {
+        if (!isListened()) {
+            return;
+        }
+        publish(new ProtocolEvent(session, kind, Direction.NONE, state, null, this.charset, message));
+    }
 
-            if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
-                break;
-            } else {
-                log.warn("Failed try {} pull frame to stdin ({}) ", i + 1, emitResult);
+    private void publish(ProtocolEvent event) {
+        for (Consumer<ProtocolEvent> listener : this.eventListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException ex) {
+                log.error("Error in a listener of events", ex);
             }
         }
 
-        outbound
-                .sendByteArray(Mono.just(sendData))
-                .then()
-                .subscribe(
-                        vvoid -> {
-                        },
-                        ex -> {
-                            throw new RuntimeInstanseException(String.format("Error while sending data %s", displayStr),
-                                    ex);
-                        });
-    }
-
-    private void sendCurrentFrameToRemoteSide(NettyOutbound outbound) {
-        byte[] currentFrame = new byte[this.currentFramesToSend[this.indexCurrentFrameToSend].length];
+        // without subscribers the sink would keep the event for the first one
+        if (this.events.currentSubscriberCount() == 0) {
+            return;
+        }
 
-        System.arraycopy(this.currentFramesToSend[this.indexCurrentFrameToSend], 0, currentFrame, 0,
-                this.currentFramesToSend[this.indexCurrentFrameToSend].length);
+        EmitResult emitResult;
 
-        if (this.imitationErrorAmount > 0 && this.indexCurrentFrameToSend == this.currentFramesToSend.length - 1) {
-            currentFrame[4] += 4;
-            this.imitationErrorAmount--;
+        // several sessions may emit at once, the sink requires serialized calls
+        synchronized (this.events) {
+            emitResult = this.events.tryEmitNext(event);
         }
 
-        sendToRemoteSide(outbound, currentFrame);
+        if (emitResult.isFailure()) {
+            this.droppedEvents.increment();
+        }
     }
 
-    private void sendCurrentFrameToRemoteSide(NettyOutbound outbound, boolean recalculateChecksum) {
-        if (recalculateChecksum) {
-            byte[] currentFrame = this.currentFramesToSend[this.indexCurrentFrameToSend];
-
-            currentFrame[0] = 0;
-            currentFrame[currentFrame.length - 4] = 0;
-            currentFrame[currentFrame.length - 3] = 0;
-            currentFrame[currentFrame.length - 2] = 0;
-            currentFrame[currentFrame.length - 1] = 0;
-
-            byte ETBOrETX = currentFrame[currentFrame.length - 5];
-
-            currentFrame[currentFrame.length - 5] = 0;
-            // checksum
-            byte[] checksum = calculateChecksun(currentFrame);
+    private static <T> void emit(Sinks.Many<T> sink, String name, T event) {
+        // several sessions may emit at once, the sink requires serialized calls
+        synchronized (sink) {
+            // try 5 time
+            EmitResult emitResult;
 
-            currentFrame[currentFrame.length - 5] = ETBOrETX;
+            for (int i = 0; i < 5; i++) {
+                log.debug("Try {} pull frame to {}", i + 1, name);
 
-            // C1
-            currentFrame[currentFrame.length - 4] = checksum[0];
-            // C2
-            currentFrame[currentFrame.length - 3] = checksum[1];
+                emitResult = sink.tryEmitNext(event);
 
-            currentFrame[0] = CommonCommandASTM1381.STX.getNumber();
-            currentFrame[currentFrame.length - 2] = CommonCommandASTM1381.CR.getNumber();
-            currentFrame[currentFrame.length - 1] = CommonCommandASTM1381.LF.getNumber();
+                if (emitResult == EmitResult.OK && emitResult.isSuccess()) {
+                    break;
+                } else {
+                    log.warn("Failed try {} pull frame to {} ({}) ", i + 1, name, emitResult);
+                }
+            }
         }
-
-        sendCurrentFrameToRemoteSide(outbound);
     }
 
 }
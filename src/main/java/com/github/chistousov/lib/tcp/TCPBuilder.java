@@ -1,10 +1,20 @@
 package com.github.chistousov.lib.tcp;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 import com.github.chistousov.lib.TypeSideCommunication;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+
+import org.reactivestreams.Publisher;
 
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 
 /**
  * <p>
@@ -18,6 +28,15 @@ public class TCPBuilder {
     // Scenario for server (сценарий для сервера)
     private Path scenario;
 
+    // Scenario for server compiled by ScenarioCompiler (сценарий для сервера, скомпилированный ScenarioCompiler)
+    private Path scenarioImage;
+
+    // Scenario for server held in memory (сценарий для сервера в памяти)
+    private List<AbstractFrame> scenarioFrames;
+
+    // Scenario for server from a publisher (сценарий для сервера от издателя)
+    private Publisher<AbstractFrame> scenarioFlow;
+
     // DNS server name (required for client) (DNS имя сервера (требуется для клиента) 
     private String host;
 
@@ -30,6 +49,75 @@ public class TCPBuilder {
     // Message flow for network (for remote side) Поток сообщений для сети (для удаленной стороны)
     private Flux<byte[]> messageFlowForNetwork;
 
+    // Frames are written into direct buffers (Фреймы записываются в direct буферы)
+    private boolean preferDirectBuffer = true;
+
+    // Waiting for a reply to ENQ (6.5.2) (Ожидание ответа на ENQ)
+    private Duration establishmentTimer = Duration.ofSeconds(15);
+
+    // Waiting for a reply to a frame (6.5.2) (Ожидание ответа на фрейм)
+    private Duration senderTimer = Duration.ofSeconds(15);
+
+    // Waiting for a frame or EOT (6.5.2) (Ожидание фрейма или EOT)
+    private Duration receiverTimer = Duration.ofSeconds(30);
+
+    // Delay before ENQ after the remote side replied NAK to ENQ (6.2.6) (Задержка перед ENQ после ответа NAK на ENQ)
+    private Duration busyTimer = Duration.ofSeconds(10);
+
+    // Delay before the server (instrument) repeats ENQ after contention (6.2.7.1) (Задержка перед повтором ENQ сервером (прибором) после конфликта)
+    private Duration contentionTimer = Duration.ofSeconds(1);
+
+    // Delay before the server sends the next scenario message (Задержка перед отправкой сервером следующего сообщения сценария)
+    private Duration scenarioPacing = Duration.ofSeconds(1);
+
+    // Messages requested from MessageFlowForNetwork ahead (Сообщений, запрашиваемых из MessageFlowForNetwork заранее)
+    private int outboundQueueHighWatermark = 256;
+
+    // More messages are requested when the queue falls to it (Новые сообщения запрашиваются при падении очереди до нее)
+    private int outboundQueueLowWatermark = 64;
+
+    // Queued messages sent in one transfer phase (Сообщений из очереди, отправляемых в одной фазе передачи)
+    private int maxMessagesPerTransfer = 1;
+
+    // Times one frame is sent without being accepted (6.5.1.2) (Сколько раз фрейм отправляется без подтверждения)
+    private int maxFrameAttempts = 6;
+
+    // Times an aborted message is put back into the queue (Сколько раз прерванное сообщение возвращается в очередь)
+    private int maxRequeues = 3;
+
+    // Delay before the first requeue, doubled for every next one (Задержка перед первым возвратом, удваивается)
+    private Duration requeueBackoff = Duration.ofSeconds(1);
+
+    // Upper bound of the requeue delay (Верхняя граница задержки возврата)
+    private Duration maxRequeueBackoff = Duration.ofMinutes(1);
+
+    // Maximum text length of a frame (6.3.1) (Максимальная длина текста фрейма)
+    private int maxFrameTextLength = FrameSegmenterASTM1381.DEFAULT_MAX_TEXT_LENGTH;
+
+    // Frames end after a record where possible (Фреймы заканчиваются после записи, где возможно)
+    private boolean alignFramesToRecords = false;
+
+    // Received messages are emitted as streams of chunks (Принятые сообщения выдаются потоками чанков)
+    private boolean streamMessagesFromNetwork = false;
+
+    // Received records are emitted before the end of the message (Принятые записи выдаются до конца сообщения)
+    private boolean emitRecordsFromNetwork = false;
+
+    // Charset of the text of the scenario and logs (Кодировка текста сценария и логов)
+    private Charset charset = StandardCharsets.UTF_8;
+
+    // Scheduler of the flows and blocking reads, null for one owned by TCP (Планировщик потоков и блокирующих чтений, null для собственного планировщика TCP)
+    private Scheduler scheduler = null;
+
+    // Event loops shared with other TCP objects, null for the default ones (Event loop'ы, общие с другими TCP объектами, null для используемых по умолчанию)
+    private LoopResources loopResources = null;
+
+    // Own event loop threads if there are no shared loops, 0 for the default loops (Собственные потоки event loop, если нет общих, 0 для используемых по умолчанию)
+    private int eventLoopThreads = 0;
+
+    // Connection provider of the client, null for the default one (Поставщик соединений клиента, null для используемого по умолчанию)
+    private ConnectionProvider connectionProvider = null;
+
     /**
      * Start of construction of the object's TCP (Начало строительства TCP объекта)
      * 
@@ -101,6 +189,81 @@ public class TCPBuilder {
         return scenario;
     }
 
+    /**
+     * <p>
+     * Scenario for server compiled by {@link com.github.chistousov.lib.tcp.scenario.ScenarioCompiler}, it is mapped into memory and replayed as compiled, not to be set with another scenario (Сценарий для сервера, скомпилированный ScenarioCompiler, отображается в память и воспроизводится как скомпилирован, не задается вместе с другим сценарием)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setScenarioImage(Path scenarioImage) {
+        this.scenarioImage = scenarioImage;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Scenario for server compiled by {@link com.github.chistousov.lib.tcp.scenario.ScenarioCompiler} (Сценарий для сервера, скомпилированный ScenarioCompiler)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Path getScenarioImage() {
+        return scenarioImage;
+    }
+
+    /**
+     * <p>
+     * Scenario for server held in memory, frames are built with SendFrameBuilder and ReceiveFrameBuilder, not to be set with another scenario. The list is copied (Сценарий для сервера в памяти, фреймы строятся SendFrameBuilder и ReceiveFrameBuilder, не задается вместе с другим сценарием. Список копируется)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setScenarioFrames(List<AbstractFrame> scenarioFrames) {
+        this.scenarioFrames = scenarioFrames;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Scenario for server held in memory (Сценарий для сервера в памяти)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public List<AbstractFrame> getScenarioFrames() {
+        return scenarioFrames;
+    }
+
+    /**
+     * <p>
+     * Scenario for server from a publisher, it is subscribed to by every client session, so a cold publisher replays the scenario from the start. May be unbounded, frames are requested as they are passed, not to be set with another scenario (Сценарий для сервера от издателя, на него подписывается каждая сессия клиента, поэтому холодный издатель воспроизводит сценарий с начала. Может быть бесконечным, фреймы запрашиваются по мере прохождения, не задается вместе с другим сценарием)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setScenarioFlow(Publisher<AbstractFrame> scenarioFlow) {
+        this.scenarioFlow = scenarioFlow;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Scenario for server from a publisher (Сценарий для сервера от издателя)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Publisher<AbstractFrame> getScenarioFlow() {
+        return scenarioFlow;
+    }
+
     /**
      * <p>
      * Server port (порт сервера)
@@ -150,6 +313,581 @@ public class TCPBuilder {
         return messageFlowForNetwork;
     }
 
+    /**
+     * <p>
+     * Frames are written into direct buffers, true by default (Фреймы записываются в direct буферы, по умолчанию true)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setPreferDirectBuffer(boolean preferDirectBuffer) {
+        this.preferDirectBuffer = preferDirectBuffer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Frames are written into direct buffers, true by default (Фреймы записываются в direct буферы, по умолчанию true)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isPreferDirectBuffer() {
+        return preferDirectBuffer;
+    }
+
+    /**
+     * <p>
+     * Waiting for a reply to ENQ, 15 seconds by default (Ожидание ответа на ENQ, по умолчанию 15 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setEstablishmentTimer(Duration establishmentTimer) {
+        this.establishmentTimer = establishmentTimer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Waiting for a reply to ENQ, 15 seconds by default (Ожидание ответа на ENQ, по умолчанию 15 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getEstablishmentTimer() {
+        return establishmentTimer;
+    }
+
+    /**
+     * <p>
+     * Waiting for a reply to a frame, 15 seconds by default (Ожидание ответа на фрейм, по умолчанию 15 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setSenderTimer(Duration senderTimer) {
+        this.senderTimer = senderTimer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Waiting for a reply to a frame, 15 seconds by default (Ожидание ответа на фрейм, по умолчанию 15 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getSenderTimer() {
+        return senderTimer;
+    }
+
+    /**
+     * <p>
+     * Waiting for a frame or EOT, 30 seconds by default (Ожидание фрейма или EOT, по умолчанию 30 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setReceiverTimer(Duration receiverTimer) {
+        this.receiverTimer = receiverTimer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Waiting for a frame or EOT, 30 seconds by default (Ожидание фрейма или EOT, по умолчанию 30 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getReceiverTimer() {
+        return receiverTimer;
+    }
+
+    /**
+     * <p>
+     * Delay before ENQ after the remote side replied NAK to ENQ, 10 seconds by default (Задержка перед ENQ после ответа NAK на ENQ, по умолчанию 10 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setBusyTimer(Duration busyTimer) {
+        this.busyTimer = busyTimer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Delay before ENQ after the remote side replied NAK to ENQ, 10 seconds by default (Задержка перед ENQ после ответа NAK на ENQ, по умолчанию 10 секунд)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getBusyTimer() {
+        return busyTimer;
+    }
+
+    /**
+     * <p>
+     * Delay before the server (instrument) repeats ENQ after contention, 1 second by default (Задержка перед повтором ENQ сервером (прибором) после конфликта, по умолчанию 1 секунда)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setContentionTimer(Duration contentionTimer) {
+        this.contentionTimer = contentionTimer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Delay before the server (instrument) repeats ENQ after contention, 1 second by default (Задержка перед повтором ENQ сервером (прибором) после конфликта, по умолчанию 1 секунда)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getContentionTimer() {
+        return contentionTimer;
+    }
+
+    /**
+     * <p>
+     * Delay before the server sends the next scenario message, 1 second by default (Задержка перед отправкой сервером следующего сообщения сценария, по умолчанию 1 секунда)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setScenarioPacing(Duration scenarioPacing) {
+        this.scenarioPacing = scenarioPacing;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Delay before the server sends the next scenario message, 1 second by default (Задержка перед отправкой сервером следующего сообщения сценария, по умолчанию 1 секунда)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getScenarioPacing() {
+        return scenarioPacing;
+    }
+
+    /**
+     * <p>
+     * Messages requested from MessageFlowForNetwork ahead and the capacity of the outbound queue, 256 by default (Сообщений, запрашиваемых из MessageFlowForNetwork заранее, и емкость очереди на отправку, по умолчанию 256)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setOutboundQueueHighWatermark(int outboundQueueHighWatermark) {
+        this.outboundQueueHighWatermark = outboundQueueHighWatermark;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Messages requested from MessageFlowForNetwork ahead and the capacity of the outbound queue, 256 by default (Сообщений, запрашиваемых из MessageFlowForNetwork заранее, и емкость очереди на отправку, по умолчанию 256)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getOutboundQueueHighWatermark() {
+        return outboundQueueHighWatermark;
+    }
+
+    /**
+     * <p>
+     * More messages are requested when the outbound queue falls to it, 64 by default (Новые сообщения запрашиваются при падении очереди на отправку до нее, по умолчанию 64)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setOutboundQueueLowWatermark(int outboundQueueLowWatermark) {
+        this.outboundQueueLowWatermark = outboundQueueLowWatermark;
+        return this;
+    }
+
+    /**
+     * <p>
+     * More messages are requested when the outbound queue falls to it, 64 by default (Новые сообщения запрашиваются при падении очереди на отправку до нее, по умолчанию 64)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getOutboundQueueLowWatermark() {
+        return outboundQueueLowWatermark;
+    }
+
+    /**
+     * <p>
+     * Queued messages the client sends in one transfer phase before EOT, 1 by default (Сообщений из очереди, отправляемых клиентом в одной фазе передачи до EOT, по умолчанию 1)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setMaxMessagesPerTransfer(int maxMessagesPerTransfer) {
+        this.maxMessagesPerTransfer = maxMessagesPerTransfer;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Queued messages the client sends in one transfer phase before EOT, 1 by default (Сообщений из очереди, отправляемых клиентом в одной фазе передачи до EOT, по умолчанию 1)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getMaxMessagesPerTransfer() {
+        return maxMessagesPerTransfer;
+    }
+
+    /**
+     * <p>
+     * Times one frame is sent without being accepted before the message is aborted (6.5.1.2), 6 by default (Сколько раз один фрейм отправляется без подтверждения до прерывания сообщения, по умолчанию 6)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setMaxFrameAttempts(int maxFrameAttempts) {
+        this.maxFrameAttempts = maxFrameAttempts;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Times one frame is sent without being accepted before the message is aborted (6.5.1.2), 6 by default (Сколько раз один фрейм отправляется без подтверждения до прерывания сообщения, по умолчанию 6)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getMaxFrameAttempts() {
+        return maxFrameAttempts;
+    }
+
+    /**
+     * <p>
+     * Times the client puts an aborted message back into the queue, 3 by default (Сколько раз клиент возвращает прерванное сообщение в очередь, по умолчанию 3)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setMaxRequeues(int maxRequeues) {
+        this.maxRequeues = maxRequeues;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Times the client puts an aborted message back into the queue, 3 by default (Сколько раз клиент возвращает прерванное сообщение в очередь, по умолчанию 3)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getMaxRequeues() {
+        return maxRequeues;
+    }
+
+    /**
+     * <p>
+     * Delay before the first requeue, doubled for every next one, 1 second by default (Задержка перед первым возвратом в очередь, удваивается для каждого следующего, по умолчанию 1 секунда)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setRequeueBackoff(Duration requeueBackoff) {
+        this.requeueBackoff = requeueBackoff;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Delay before the first requeue, doubled for every next one, 1 second by default (Задержка перед первым возвратом в очередь, удваивается для каждого следующего, по умолчанию 1 секунда)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getRequeueBackoff() {
+        return requeueBackoff;
+    }
+
+    /**
+     * <p>
+     * Upper bound of the requeue delay, 1 minute by default (Верхняя граница задержки возврата в очередь, по умолчанию 1 минута)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setMaxRequeueBackoff(Duration maxRequeueBackoff) {
+        this.maxRequeueBackoff = maxRequeueBackoff;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Upper bound of the requeue delay, 1 minute by default (Верхняя граница задержки возврата в очередь, по умолчанию 1 минута)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Duration getMaxRequeueBackoff() {
+        return maxRequeueBackoff;
+    }
+
+    /**
+     * <p>
+     * Maximum text length of a frame sent by the client, 240 by default (247 character frame of LIS1-A) (Максимальная длина текста фрейма, отправляемого клиентом, по умолчанию 240 (фрейм LIS1-A из 247 символов))
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setMaxFrameTextLength(int maxFrameTextLength) {
+        this.maxFrameTextLength = maxFrameTextLength;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Maximum text length of a frame sent by the client, 240 by default (247 character frame of LIS1-A) (Максимальная длина текста фрейма, отправляемого клиентом, по умолчанию 240 (фрейм LIS1-A из 247 символов))
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getMaxFrameTextLength() {
+        return maxFrameTextLength;
+    }
+
+    /**
+     * <p>
+     * Frames end after a record (CR) where possible, false by default (Фреймы заканчиваются после записи (CR), где возможно, по умолчанию false)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setAlignFramesToRecords(boolean alignFramesToRecords) {
+        this.alignFramesToRecords = alignFramesToRecords;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Frames end after a record (CR) where possible, false by default (Фреймы заканчиваются после записи (CR), где возможно, по умолчанию false)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isAlignFramesToRecords() {
+        return alignFramesToRecords;
+    }
+
+    /**
+     * <p>
+     * The client emits received messages as streams of chunks to getMessageStreamsFromNetwork instead of whole messages to getMessageFlowFromNetwork, false by default (Клиент выдает принятые сообщения потоками чанков в getMessageStreamsFromNetwork вместо целых сообщений в getMessageFlowFromNetwork, по умолчанию false)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setStreamMessagesFromNetwork(boolean streamMessagesFromNetwork) {
+        this.streamMessagesFromNetwork = streamMessagesFromNetwork;
+        return this;
+    }
+
+    /**
+     * <p>
+     * The client emits received messages as streams of chunks to getMessageStreamsFromNetwork instead of whole messages to getMessageFlowFromNetwork, false by default (Клиент выдает принятые сообщения потоками чанков в getMessageStreamsFromNetwork вместо целых сообщений в getMessageFlowFromNetwork, по умолчанию false)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isStreamMessagesFromNetwork() {
+        return streamMessagesFromNetwork;
+    }
+
+    /**
+     * <p>
+     * The client also emits every received record to getRecordFlowFromNetwork as soon as the frame completing it is accepted, false by default (Клиент также выдает каждую принятую запись в getRecordFlowFromNetwork сразу после приема завершающего ее фрейма, по умолчанию false)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setEmitRecordsFromNetwork(boolean emitRecordsFromNetwork) {
+        this.emitRecordsFromNetwork = emitRecordsFromNetwork;
+        return this;
+    }
+
+    /**
+     * <p>
+     * The client also emits every received record to getRecordFlowFromNetwork as soon as the frame completing it is accepted, false by default (Клиент также выдает каждую принятую запись в getRecordFlowFromNetwork сразу после приема завершающего ее фрейма, по умолчанию false)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public boolean isEmitRecordsFromNetwork() {
+        return emitRecordsFromNetwork;
+    }
+
+    /**
+     * <p>
+     * Charset of the text of the scenario, of expected messages and of logs, UTF-8 by default. Received and sent messages stay bytes, the charset is applied only to text (Кодировка текста сценария, ожидаемых сообщений и логов, по умолчанию UTF-8. Принятые и отправляемые сообщения остаются байтами, кодировка применяется только к тексту)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Charset of the text of the scenario, of expected messages and of logs, UTF-8 by default. Received and sent messages stay bytes, the charset is applied only to text (Кодировка текста сценария, ожидаемых сообщений и логов, по умолчанию UTF-8. Принятые и отправляемые сообщения остаются байтами, кодировка применяется только к тексту)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * <p>
+     * Scheduler on which getMessageFlowFromNetwork, getStdIn, getStdOut and getStdErr deliver and InputStream messages are read, for example Schedulers.boundedElastic() shared by the application or Schedulers.fromExecutorService(...) over the caller's executor. It is not disposed by TCP. By default TCP creates a bounded elastic scheduler and disposes it in stop() (Планировщик, на котором выдают getMessageFlowFromNetwork, getStdIn, getStdOut и getStdErr и читаются сообщения из InputStream. TCP его не освобождает. По умолчанию TCP создает bounded elastic планировщик и освобождает его в stop())
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Scheduler on which getMessageFlowFromNetwork, getStdIn, getStdOut and getStdErr deliver and InputStream messages are read, for example Schedulers.boundedElastic() shared by the application or Schedulers.fromExecutorService(...) over the caller's executor. It is not disposed by TCP. By default TCP creates a bounded elastic scheduler and disposes it in stop() (Планировщик, на котором выдают getMessageFlowFromNetwork, getStdIn, getStdOut и getStdErr и читаются сообщения из InputStream. TCP его не освобождает. По умолчанию TCP создает bounded elastic планировщик и освобождает его в stop())
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * <p>
+     * Event loops shared with other TCP objects, they are not disposed by TCP. By default the loops of Reactor Netty shared by the JVM are used (Event loop'ы, общие с другими TCP объектами, TCP их не освобождает. По умолчанию используются общие для JVM event loop'ы Reactor Netty)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setLoopResources(LoopResources loopResources) {
+        this.loopResources = loopResources;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Event loops shared with other TCP objects, they are not disposed by TCP. By default the loops of Reactor Netty shared by the JVM are used (Event loop'ы, общие с другими TCP объектами, TCP их не освобождает. По умолчанию используются общие для JVM event loop'ы Reactor Netty)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public LoopResources getLoopResources() {
+        return loopResources;
+    }
+
+    /**
+     * <p>
+     * Number of own event loop threads, created on start() and disposed in stop(), used if LoopResources is not set. 0 (default) - the loops of Reactor Netty shared by the JVM (Количество собственных потоков event loop, создаются в start() и освобождаются в stop(), используются, если не задан LoopResources. 0 (по умолчанию) - общие для JVM event loop'ы Reactor Netty)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Number of own event loop threads, created on start() and disposed in stop(), used if LoopResources is not set. 0 (default) - the loops of Reactor Netty shared by the JVM (Количество собственных потоков event loop, создаются в start() и освобождаются в stop(), используются, если не задан LoopResources. 0 (по умолчанию) - общие для JVM event loop'ы Reactor Netty)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * <p>
+     * Connection provider of the client, it is not disposed by TCP, the default one of Reactor Netty by default (Поставщик соединений клиента, TCP его не освобождает, по умолчанию используемый Reactor Netty)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder setConnectionProvider(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Connection provider of the client, it is not disposed by TCP, the default one of Reactor Netty by default (Поставщик соединений клиента, TCP его не освобождает, по умолчанию используемый Reactor Netty)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
     /**
      * End of construction of the object's TCP (Конец строительства TCP объекта)
      * 
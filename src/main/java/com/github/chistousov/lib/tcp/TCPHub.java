@@ -0,0 +1,190 @@
+package com.github.chistousov.lib.tcp;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.github.chistousov.lib.TypeSideCommunication;
+import com.github.chistousov.lib.exceptions.CreateInstanseException;
+import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * <p>
+ * Many client and server endpoints on one set of threads (Много клиентских и серверных точек на одном наборе потоков).
+ * </p>
+ * <p>
+ * The hub owns the event loops, the connection provider of clients and the
+ * scheduler of the flows. Every TCP built from {@link #builder(TypeSideCommunication, int)}
+ * and added with {@link #add(TCPBuilder)} uses them, so one process serves
+ * many analyzers with a fixed number of I/O threads.
+ * </p>
+ *
+ * <pre>
+ * TCPHub hub = new TCPHub(2);
+ * TCP analyzer = hub.add(hub
+ *         .builder(TypeSideCommunication.CLIENT, 5000)
+ *         .setHost("analyzer-1")
+ *         .setMessageFlowForNetwork(flow));
+ * hub.startAll();
+ * ...
+ * hub.dispose();
+ * </pre>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class TCPHub {
+    private static Logger log = LoggerFactory.getLogger(TCPHub.class);
+
+    private final LoopResources loopResources;
+    private final ConnectionProvider connectionProvider;
+    private final Scheduler scheduler;
+
+    private final List<TCP> endpoints = new CopyOnWriteArrayList<>();
+
+    /**
+     * <p>
+     * Hub with its own threads (Хаб с собственными потоками)
+     * </p>
+     *
+     * @param eventLoopThreads - I/O threads of all endpoints (потоки ввода-вывода всех точек)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPHub(int eventLoopThreads) {
+        if (eventLoopThreads < 1) {
+            throw new CreateInstanseException("EventLoopThreads should be at least 1");
+        }
+
+        this.loopResources = LoopResources.create("astm1381-hub", eventLoopThreads, true);
+        // every client keeps its own connection (каждый клиент держит свое соединение)
+        this.connectionProvider = ConnectionProvider.newConnection();
+        this.scheduler = Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "astm1381-hub", 60, true);
+    }
+
+    /**
+     * <p>
+     * Builder of an endpoint on the threads of the hub (Строитель точки на потоках хаба)
+     * </p>
+     *
+     * @param typeSideCommunication - Interaction side type (тип стороны взаимодействия)
+     * @param port - Server port (порт сервера)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCPBuilder builder(TypeSideCommunication typeSideCommunication, int port) {
+        return TCPBuilder
+                .builder(typeSideCommunication, port)
+                .setLoopResources(this.loopResources)
+                .setConnectionProvider(this.connectionProvider)
+                .setScheduler(this.scheduler);
+    }
+
+    /**
+     * <p>
+     * Build an endpoint and manage it by the hub (Построить точку и управлять ею через хаб)
+     * </p>
+     *
+     * @param tcpBuilder - builder from {@link #builder(TypeSideCommunication, int)} (строитель из builder)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TCP add(TCPBuilder tcpBuilder) {
+        if (tcpBuilder.getLoopResources() != this.loopResources) {
+            throw new CreateInstanseException("The builder should be created by the hub");
+        }
+
+        TCP tcp = tcpBuilder.build();
+        this.endpoints.add(tcp);
+        return tcp;
+    }
+
+    /**
+     * <p>
+     * Stop an endpoint if it is running and no longer manage it (Остановить точку, если она работает, и больше не управлять ею)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public void remove(TCP tcp) {
+        if (this.endpoints.remove(tcp)) {
+            stopQuietly(tcp);
+        }
+    }
+
+    public List<TCP> getEndpoints() {
+        return Collections.unmodifiableList(this.endpoints);
+    }
+
+    /**
+     * <p>
+     * Start the endpoints that are not running (Запустить неработающие точки)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public void startAll() {
+        for (TCP tcp : this.endpoints) {
+            if (!tcp.isRunning()) {
+                tcp.start();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Stop the running endpoints (Остановить работающие точки)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public void stopAll() {
+        for (TCP tcp : this.endpoints) {
+            stopQuietly(tcp);
+        }
+    }
+
+    /**
+     * <p>
+     * Stop the endpoints and release the threads of the hub (Остановить точки и освободить потоки хаба)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public void dispose() {
+        stopAll();
+        this.endpoints.clear();
+
+        this.scheduler.dispose();
+        this.connectionProvider.dispose();
+        this.loopResources.dispose();
+    }
+
+    private static void stopQuietly(TCP tcp) {
+        // a server still binding is stopped too
+        if (tcp.isStopped()) {
+            return;
+        }
+        try {
+            tcp.stop();
+        } catch (RuntimeInstanseException ex) {
+            log.warn("Error stopping an endpoint", ex);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.chistousov.lib.tcp;
+
+import java.util.ArrayDeque;
+
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.BaseSubscriber;
+
+/**
+ * <p>
+ * Bounded queue of messages for the remote side (Ограниченная очередь сообщений для удаленной стороны).
+ * </p>
+ * <p>
+ * Messages are requested from the upstream publisher with real demand: at most
+ * the high watermark is requested up front, and more is requested only after
+ * the sessions drained the queue down to the low watermark. A fast producer is
+ * therefore held back by the publisher instead of filling the heap. The queue
+ * is not writable from reaching the high watermark until it falls to the low
+ * one, like the writability of a Netty channel.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+final class TCPOutboundQueue extends BaseSubscriber<byte[]> {
+    private static Logger log = LoggerFactory.getLogger(TCPOutboundQueue.class);
+
+    private final int highWatermark;
+    private final int lowWatermark;
+
+    // called after a message is queued (вызывается после постановки сообщения в очередь)
+    private final Runnable onQueued;
+
+    // guarded by this (upstream thread and event loops)
+    private final ArrayDeque<OutboundMessage> queue;
+
+    // requested from upstream, not yet received
+    private long outstanding;
+
+    private volatile int depth;
+    private volatile boolean writable = true;
+
+    TCPOutboundQueue(int highWatermark, int lowWatermark, Runnable onQueued) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.onQueued = onQueued;
+        this.queue = new ArrayDeque<>(highWatermark);
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        synchronized (this) {
+            this.outstanding = this.highWatermark;
+        }
+        subscription.request(this.highWatermark);
+    }
+
+    @Override
+    protected void hookOnNext(byte[] message) {
+        synchronized (this) {
+            this.outstanding--;
+            enqueue(new OutboundMessage(message, null));
+        }
+        this.onQueued.run();
+    }
+
+    /*
+     * Message of TCP#send, it does not use the demand of the publisher and
+     * is refused while the queue is not writable
+     * (Сообщение TCP#send, не расходует запрос к издателю и не принимается,
+     * пока очередь недоступна для записи)
+     */
+    boolean offer(OutboundMessage message) {
+        synchronized (this) {
+            if (!this.writable) {
+                return false;
+            }
+            enqueue(message);
+        }
+        this.onQueued.run();
+        return true;
+    }
+
+    /*
+     * Aborted message goes back to the head of the queue, it was accepted
+     * once and is never refused
+     * (Прерванное сообщение возвращается в начало очереди, оно уже было
+     * принято и не отклоняется)
+     */
+    void requeue(OutboundMessage message) {
+        synchronized (this) {
+            this.queue.offerFirst(message);
+            updateWritable();
+        }
+        this.onQueued.run();
+    }
+
+    private void enqueue(OutboundMessage message) {
+        this.queue.offer(message);
+        updateWritable();
+    }
+
+    private void updateWritable() {
+        this.depth = this.queue.size();
+
+        if (this.writable && this.depth >= this.highWatermark) {
+            this.writable = false;
+            log.warn("Outbound queue reached the high watermark ({} messages)", this.depth);
+        }
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        log.error("Error inserting into queue", throwable);
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        log.error("Complete inserting into queue");
+    }
+
+    /*
+     * Next message or null, demand is replenished at the low watermark
+     * (Следующее сообщение или null, на нижней отметке запрашиваются новые)
+     */
+    OutboundMessage poll() {
+        OutboundMessage message;
+        long request = 0;
+
+        synchronized (this) {
+            message = this.queue.poll();
+            this.depth = this.queue.size();
+
+            if (this.depth + this.outstanding <= this.lowWatermark) {
+                request = this.highWatermark - this.depth - this.outstanding;
+                this.outstanding += request;
+            }
+
+            if (!this.writable && this.depth <= this.lowWatermark) {
+                this.writable = true;
+                log.info("Outbound queue fell to the low watermark ({} messages)", this.depth);
+            }
+        }
+
+        if (request > 0) {
+            request(request);
+        }
+
+        return message;
+    }
+
+    int getDepth() {
+        return this.depth;
+    }
+
+    boolean isWritable() {
+        return this.writable;
+    }
+}
@@ -0,0 +1,1150 @@
+package com.github.chistousov.lib.tcp;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.chistousov.lib.TypeSideCommunication;
+import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
+import com.github.chistousov.lib.tcp.scenario.ScenarioCursor;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.ReceiveFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AttributeKey;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.Connection;
+import reactor.netty.NettyOutbound;
+
+/**
+ * <p>
+ * Protocol state of one TCP connection (Состояние протокола одного TCP соединения).
+ * </p>
+ * <p>
+ * Created when the remote side connects and bound to the channel. All methods
+ * are called on the event loop of the channel, so the state needs no locking
+ * and connections served by one {@link TCP} do not see each other.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+final class TCPSession {
+    private static Logger log = LoggerFactory.getLogger(TCPSession.class);
+
+    // session bound to the channel (сессия, привязанная к каналу)
+    static final AttributeKey<TCPSession> SESSION = AttributeKey.valueOf("astm1381Session");
+
+    private static final String TRY_SEND_MESSAGE_TO_CLIENT = "Try send message {} to CLIENT";
+    private static final String RECEIVED_NOISE = "Received noise";
+    private static final String SERVER_TO_CLIENT = "SERVER -->> CLIENT";
+    private static final String CLIENT_TO_SERVER = "CLIENT -->> SERVER";
+
+    // delay before the line is released after an error
+    private static final long ERROR_RECOVERY_DELAY_MILLIS = 2_000;
+
+    // the endpoint this session belongs to (конечная точка, которой принадлежит сессия)
+    private final TCP tcp;
+
+    // connection of the session (соединение сессии)
+    private final Connection connection;
+
+    // number of the session in the events (номер сессии в событиях)
+    private final int number;
+
+    private final NettyOutbound outbound;
+
+    // client or server
+    private final TypeSideCommunication typeSideCommunication;
+
+    // what is done on a received command (что делается при принятой команде)
+    private final TransitionTableASTM1381 transitions;
+
+    // the phase the client or server is in (фаза, в которой находится клиент или
+    // сервер)
+    private State statePhase;
+
+    // for sending frames
+    // the next frame is produced when the current one is accepted
+    private FrameSegmenterASTM1381 segmenter;
+    private ByteBuf currentFrame;
+    // FN 0-7
+    private byte currentFrameNumberSend;
+
+    // for receiving frames
+    private final ReceiveBufferASTM1381 bufferReceiveFramesData = new ReceiveBufferASTM1381();
+    // checksum of the received frame, reused for every frame
+    private final ChecksumASTM1381 receiveChecksum = new ChecksumASTM1381();
+    // or chunks of the message, if the client streams received messages
+    private Sinks.Many<ByteBuffer> receivingStream;
+    // FN 0-7
+    private byte currentFrameNumberReceive;
+
+    // number of attempts to send a message (6.5.1.2)
+    private int numberOfAttemptsToSendMessage;
+
+    // message being sent and its retransmits, for the receipt (отправляемое сообщение и его повторы, для квитанции)
+    private OutboundMessage currentOutboundMessage;
+    private int retransmits;
+
+    // delayed protocol action on the event loop (отложенное действие протокола в event loop)
+    private ScheduledFuture<?> pendingTimer;
+    // the pending action sends ENQ, the establishment timer waits for it
+    // (отложенное действие отправляет ENQ, таймер установления ждет его)
+    private boolean enqScheduled;
+
+    // timeout of the current phase, none in NEUTRAL (6.5.2) (таймаут текущей фазы, в NEUTRAL отсутствует)
+    private ScheduledFuture<?> phaseTimer;
+
+    // error recovery is in progress, received data is discarded
+    private boolean recovering;
+
+    // messages sent in the current transfer phase (сообщений, отправленных в текущей фазе передачи)
+    private int messagesInTransfer;
+
+    // a bid for queued messages is already scheduled on the event loop
+    private volatile boolean wakeUpScheduled;
+
+    // ---- SERVER ----
+
+    // current CrushingType for send
+    private CrushingType currentCrushingType;
+
+    // current frame to send
+    private byte[] currentSendMessageBytesSimulate;
+    // or its compiled message, split and summed beforehand
+    private CompiledMessage currentCompiledMessage;
+
+    // how much to simulate an erroneous situation
+    private byte imitationErrorAmount;
+
+    // check the message from the client
+    private byte[] shouldBeReceiveBytes;
+
+    // position of this session in the scenario, null for the client
+    private final ScenarioCursor scenario;
+
+    // the message being sent is still the current entry of the scenario
+    private boolean scenarioSendPending;
+
+    // ---- ----
+
+    TCPSession(TCP tcp, Connection connection, int number) {
+        this.tcp = tcp;
+        this.connection = connection;
+        this.number = number;
+        this.outbound = connection.outbound();
+        this.typeSideCommunication = tcp.getTypeSideCommunication();
+        this.transitions = TransitionTableASTM1381.of(this.typeSideCommunication);
+        this.scenario = this.typeSideCommunication == TypeSideCommunication.SERVER ? tcp.openScenario() : null;
+        this.statePhase = State.NEUTRAL;
+    }
+
+    /*
+     * The server starts its scenario as soon as the client is connected
+     * (Сервер начинает свой сценарий сразу после подключения клиента)
+     */
+    void start() {
+        if (awaitScenario(this::start)) {
+            return;
+        }
+
+        if (this.typeSideCommunication == TypeSideCommunication.SERVER && isScenarioOver()) {
+            log.info("Scenario is over, disconnect client {}", this.connection.address());
+            this.connection.dispose();
+            return;
+        }
+
+        // the server waits for ENQ of the client if the scenario starts with receiving
+        bidForLineIfWorkQueued();
+
+        restartPhaseTimer();
+    }
+
+    /*
+     * A message is queued for the remote side: bid for the line if it is
+     * neutral. Called from any thread, the bid is made on the event loop.
+     * (В очередь поставлено сообщение для удаленной стороны: претендовать на
+     * линию, если она нейтральна. Вызывается из любого потока, заявка
+     * делается в event loop.)
+     */
+    void wakeUp() {
+        if (this.wakeUpScheduled) {
+            return;
+        }
+        this.wakeUpScheduled = true;
+
+        this.connection.channel().eventLoop().execute(() -> {
+            this.wakeUpScheduled = false;
+            try {
+                if (this.statePhase == State.NEUTRAL && !this.recovering) {
+                    bidForLineIfWorkQueued();
+                    restartPhaseTimer();
+                }
+            } catch (Exception ex) {
+                handlerError(ex);
+            }
+        });
+    }
+
+    /*
+     * In NEUTRAL the client bids as soon as messages are queued, the server as
+     * soon as the next scenario message is to be sent
+     * (В NEUTRAL клиент претендует на линию, как только в очереди есть
+     * сообщения, сервер - как только следующее сообщение сценария нужно
+     * отправить)
+     */
+    private void bidForLineIfWorkQueued() {
+        if (this.statePhase != State.NEUTRAL) {
+            return;
+        }
+
+        if (this.typeSideCommunication == TypeSideCommunication.SERVER) {
+
+            if (nextScenarioMessage() instanceof SendFrame) {
+                prepareScenarioSend((SendFrame) nextScenarioMessage());
+            }
+
+        } else if (this.tcp.getOutboundQueueDepth() > 0) {
+
+            this.statePhase = State.ESTABLISHMENT_MYSELF;
+
+            sendToRemoteSide(new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
+        }
+    }
+
+    /*
+     * After receiving a message the server sends the next scenario message,
+     * disconnects at the end of the scenario or waits for the client
+     * (После приема сообщения сервер отправляет следующее сообщение сценария,
+     * отключается в конце сценария или ждет клиента)
+     */
+    private void continueScenario() {
+        if (awaitScenario(this::continueScenario)) {
+            return;
+        }
+
+        if (nextScenarioMessage() instanceof SendFrame) {
+
+            prepareScenarioSend((SendFrame) nextScenarioMessage());
+
+        } else if (isScenarioOver()) {
+
+            log.info("Scenario is over, disconnect client {}", this.connection.address());
+
+            this.connection.dispose();
+
+        } else {
+
+            // the client bids by itself when it has the next message
+            this.statePhase = State.NEUTRAL;
+        }
+    }
+
+    /*
+     * The server takes the next scenario message and bids for the line after
+     * the scenario pacing
+     * (Сервер берет следующее сообщение сценария и претендует на линию после
+     * паузы сценария)
+     */
+    private void prepareScenarioSend(SendFrame sendFrame) {
+        this.currentCrushingType = sendFrame.getCrushingType();
+        this.imitationErrorAmount = sendFrame.getErrors();
+        this.currentCompiledMessage = sendFrame.getCompiled();
+        this.currentSendMessageBytesSimulate = this.currentCompiledMessage == null
+                ? sendFrame.getFrame().getBytes(this.tcp.getCharset())
+                : null;
+
+        // the text of a compiled message is decoded only if logged
+        log.info(TRY_SEND_MESSAGE_TO_CLIENT, sendFrame);
+
+        // the entry is taken once the message is accepted, after a timeout it is sent again
+        this.scenarioSendPending = true;
+
+        this.statePhase = State.ESTABLISHMENT_MYSELF;
+
+        // scenario pacing
+        bidForLineLater(this.tcp.getScenarioPacing().toMillis());
+    }
+
+    /*
+     * The scenario message is accepted or given up, the next entry is taken
+     * (Сообщение сценария принято или от него отказались, берется следующая
+     * запись)
+     */
+    private void takeScenarioMessage() {
+        if (this.scenarioSendPending) {
+            this.scenarioSendPending = false;
+            this.scenario.advance();
+        }
+    }
+
+    /*
+     * Timers are cancelled and buffers released when the connection is closed
+     * (При закрытии соединения таймеры отменяются, буферы освобождаются)
+     */
+    void close() {
+        if (this.pendingTimer != null) {
+            this.pendingTimer.cancel(false);
+            this.pendingTimer = null;
+        }
+        cancelPhaseTimer();
+        completeDelivery(DeliveryStatus.LOST, "Connection is closed");
+        releaseFramesToSend();
+        discardReceivedMessage("Connection is closed");
+
+        if (this.scenario != null) {
+            this.scenario.close();
+        }
+    }
+
+    /*
+     * Close the connection of the session (Закрыть соединение сессии)
+     */
+    void dispose() {
+        this.connection.dispose();
+    }
+
+    State getStatePhase() {
+        return this.statePhase;
+    }
+
+    int getNumber() {
+        return this.number;
+    }
+
+    /*
+     * The next entry of a scenario flow may not have arrived yet, the step is
+     * taken on the event loop once it does, if the line is still neutral
+     * (Следующая запись потока сценария может еще не прийти, шаг делается в
+     * event loop, когда она придет, если линия все еще нейтральна)
+     */
+    private boolean awaitScenario(Runnable step) {
+        if (this.scenario == null || this.scenario.isReady()) {
+            return false;
+        }
+
+        this.statePhase = State.NEUTRAL;
+
+        this.scenario.onReady(() -> this.connection.channel().eventLoop().execute(() -> {
+            if (this.statePhase != State.NEUTRAL || this.recovering || !this.connection.channel().isActive()) {
+                return;
+            }
+            try {
+                step.run();
+            } catch (Exception ex) {
+                handlerError(ex);
+            }
+        }));
+
+        return true;
+    }
+
+    private boolean isScenarioOver() {
+        return this.scenario == null || this.scenario.isOver();
+    }
+
+    private AbstractFrame nextScenarioMessage() {
+        return this.scenario == null ? null : this.scenario.peek();
+    }
+
+    private void finalizeReceiveData() {
+        this.currentFrameNumberReceive = -1;
+    }
+
+    private void initSendData() {
+
+        releaseFramesToSend();
+
+        this.currentFrameNumberSend = 0;
+    }
+
+    private void finalizeSendData() {
+        completeDelivery(DeliveryStatus.ABORTED, "Transfer is interrupted");
+        releaseFramesToSend();
+
+        this.currentFrameNumberSend = -1;
+    }
+
+    private void completeDelivery(DeliveryStatus status, String failureReason) {
+        if (this.currentOutboundMessage != null) {
+            int frames = this.segmenter == null ? 0 : this.segmenter.getFrames();
+            this.currentOutboundMessage.complete(status, frames, this.retransmits, failureReason);
+            this.currentOutboundMessage = null;
+        }
+    }
+
+    private void releaseFramesToSend() {
+        releaseCurrentFrame();
+        if (this.segmenter != null) {
+            this.segmenter.release();
+            this.segmenter = null;
+        }
+    }
+
+    private void releaseCurrentFrame() {
+        if (this.currentFrame != null) {
+            this.currentFrame.release();
+            this.currentFrame = null;
+        }
+    }
+
+    /*
+     * One decoded frame, command or noise from the remote side
+     * (Один декодированный фрейм, команда или шум от удаленной стороны)
+     */
+    void handlerReceived(ByteBuf inByteBuf) {
+
+        if (this.recovering) {
+            log.debug("Recovery after an error, received data is discarded ({} state is {})",
+                    this.typeSideCommunication, this.statePhase);
+            return;
+        }
+
+        try {
+            if (inByteBuf.readableBytes() == 1) {
+
+                byte commandByte = inByteBuf.getByte(inByteBuf.readerIndex());
+
+                CommonCommandASTM1381 command = CommonCommandASTM1381.getCommonCommandByNumber(commandByte);
+                if (command == CommonCommandASTM1381.NULL) {
+                    throw new RuntimeInstanseException(String.format("Unknown command received 0x%02X ",
+                            commandByte));
+                }
+
+                log.info("Command\r\nRECEIVED {}\r\n{}\r\n({} state is {})",
+                        this.typeSideCommunication == TypeSideCommunication.SERVER ? CLIENT_TO_SERVER
+                                : SERVER_TO_CLIENT,
+                        command, this.typeSideCommunication, this.statePhase);
+
+                this.tcp.emitEvent(this.number, ProtocolEventKind.COMMAND_RECEIVED, Direction.FROM_REMOTE_SIDE, this.statePhase,
+                        inByteBuf);
+
+                handlerCommand(command);
+
+            } else if (inByteBuf.readableBytes() > 1 && this.statePhase == State.TRANSFER_REMOTE_SIDE) {
+
+                // the decoder hands over exactly one frame (or noise)
+                int start = inByteBuf.readerIndex();
+                int length = inByteBuf.readableBytes();
+                int end = start + length;
+
+                Object displayStr = DisplayASTM1381.lazy(inByteBuf, this.tcp.getCharset());
+
+                log.info("Bytes\r\nRECEIVED {}\r\n{}\r\n({} state is {})",
+                        this.typeSideCommunication == TypeSideCommunication.SERVER ? CLIENT_TO_SERVER
+                                : SERVER_TO_CLIENT,
+                        displayStr,
+                        this.typeSideCommunication, this.statePhase);
+
+                this.tcp.emitEvent(this.number, ProtocolEventKind.FRAME_RECEIVED, Direction.FROM_REMOTE_SIDE, this.statePhase,
+                        inByteBuf);
+
+                if(CommonCommandASTM1381.getCommonCommandByNumber(inByteBuf.getByte(start)) != CommonCommandASTM1381.STX
+                    ||
+                    length > TCP.MAX_FRAME_SIZE
+                ){
+                    throw new RuntimeInstanseException(RECEIVED_NOISE);
+                }
+
+                if(length > 8
+                    &&
+                    CommonCommandASTM1381.getCommonCommandByNumber(inByteBuf.getByte(end - 1)) == CommonCommandASTM1381.LF
+                    &&
+                    CommonCommandASTM1381.getCommonCommandByNumber(inByteBuf.getByte(end - 2)) == CommonCommandASTM1381.CR
+                    &&
+                    (
+                        CommonCommandASTM1381.getCommonCommandByNumber(inByteBuf.getByte(end - 5)) == CommonCommandASTM1381.ETB
+                        ||
+                        CommonCommandASTM1381.getCommonCommandByNumber(inByteBuf.getByte(end - 5)) == CommonCommandASTM1381.ETX
+                    )
+                ) {
+
+                    // FN ... ETB or ETX, summed in place by the buffer
+                    this.receiveChecksum.reset().update(inByteBuf, start + 1, end - 4);
+
+                    byte c1 = inByteBuf.getByte(end - 4);
+                    byte c2 = inByteBuf.getByte(end - 3);
+
+                    // check frame number
+                    byte frameNumber = nextFrameNumber(currentFrameNumberReceive);
+
+                    if (typeSideCommunication == TypeSideCommunication.SERVER
+                            && this.imitationErrorAmount > 0) {
+                        log.info("Imitation of an erroneous frame ({} state is {})",
+                                this.typeSideCommunication, this.statePhase);
+
+                        this.imitationErrorAmount--;
+
+                        sendToRemoteSide(new byte[] { CommonCommandASTM1381.NAK.getNumber() });
+
+                    } else if (this.receiveChecksum.matches(c1, c2)
+                            && (byte) ('0' + frameNumber) == inByteBuf.getByte(start + 1)) {
+
+                        sendToRemoteSide(new byte[] { CommonCommandASTM1381.ACK.getNumber() });
+
+                        currentFrameNumberReceive = frameNumber;
+
+                        // text between FN and ETB or ETX
+                        int payloadLength = length - 7;
+
+                        boolean streamMessage = this.typeSideCommunication == TypeSideCommunication.CLIENT
+                                && this.tcp.isStreamMessagesFromNetwork();
+                        boolean emitRecords = this.typeSideCommunication == TypeSideCommunication.CLIENT
+                                && this.tcp.isEmitRecordsFromNetwork();
+
+                        if (streamMessage) {
+
+                            byte[] chunk = new byte[payloadLength];
+                            inByteBuf.getBytes(start + 2, chunk);
+
+                            if (this.receivingStream == null) {
+                                this.receivingStream = Sinks.many().unicast().onBackpressureBuffer();
+                                this.tcp.emitMessageStreamFromNetwork(this.receivingStream.asFlux());
+                            }
+                            this.receivingStream.tryEmitNext(ByteBuffer.wrap(chunk));
+                        }
+
+                        if (!streamMessage || emitRecords) {
+                            this.bufferReceiveFramesData.append(inByteBuf, start + 2, payloadLength);
+                        }
+
+                        // records completed by the accepted frame are emitted before ETX
+                        if (emitRecords) {
+                            this.bufferReceiveFramesData.forEachNewRecord(this.tcp::emitRecordFromNetwork);
+
+                            // the whole message is not kept for a streamed one
+                            if (streamMessage) {
+                                this.bufferReceiveFramesData.discardRecords();
+                            }
+                        }
+
+                        // ETX ends the message, the next one may follow in the same transfer phase
+                        if (CommonCommandASTM1381.getCommonCommandByNumber(
+                                inByteBuf.getByte(end - 5)) == CommonCommandASTM1381.ETX) {
+                            deliverReceivedMessage();
+                        }
+
+                    } else {
+                        log.info("The message has an invalid checksum ({} state is {})",
+                                this.typeSideCommunication, this.statePhase);
+
+                        sendToRemoteSide(new byte[] { CommonCommandASTM1381.NAK.getNumber() });
+                    }
+                } else {
+                    throw new RuntimeInstanseException(RECEIVED_NOISE);
+                }
+
+            } else {
+
+                byte[] invalidFrame = new byte[inByteBuf.readableBytes()];
+                inByteBuf.readBytes(invalidFrame);
+
+                throw new RuntimeInstanseException(
+                        String.format("It is not known what to do with the received frame%n%s%n",
+                                new String(invalidFrame, this.tcp.getCharset())));
+            }
+
+            restartPhaseTimer();
+
+        } catch (Exception ex) {
+            handlerError(ex);
+        }
+    }
+
+    private void deliverReceivedMessage() {
+        if (this.typeSideCommunication == TypeSideCommunication.CLIENT && this.tcp.isEmitRecordsFromNetwork()) {
+            this.bufferReceiveFramesData.lastRecord(this.tcp::emitRecordFromNetwork);
+        }
+
+        if (this.receivingStream != null) {
+            this.receivingStream.tryEmitComplete();
+            this.receivingStream = null;
+            this.bufferReceiveFramesData.clear();
+            return;
+        }
+
+        byte[] receivedData = this.bufferReceiveFramesData.toByteArray();
+
+        log.info("Message\r\nRECEIVED {}\r\n{}\r\n({} state is {})",
+                this.typeSideCommunication == TypeSideCommunication.SERVER ? CLIENT_TO_SERVER
+                        : SERVER_TO_CLIENT,
+                DisplayASTM1381.lazy(receivedData, this.tcp.getCharset()),
+                this.typeSideCommunication, this.statePhase);
+
+        this.tcp.emitEvent(this.number, ProtocolEventKind.MESSAGE_RECEIVED, Direction.FROM_REMOTE_SIDE, this.statePhase,
+                receivedData);
+
+        if (this.typeSideCommunication == TypeSideCommunication.SERVER && this.shouldBeReceiveBytes != null) {
+
+            log.info("Received message on CLIENT is {} expected ",
+                    Arrays.equals(this.shouldBeReceiveBytes, receivedData)
+                            ? "EQUAL"
+                            : "NOT the same as");
+        } else if (this.typeSideCommunication == TypeSideCommunication.CLIENT) {
+
+            this.tcp.emitMessageFromNetwork(receivedData);
+        }
+
+        this.bufferReceiveFramesData.clear();
+    }
+
+    /*
+     * The message being received is not completed (Принимаемое сообщение не завершено)
+     */
+    private void discardReceivedMessage(String reason) {
+        this.bufferReceiveFramesData.clear();
+
+        if (this.receivingStream != null) {
+            this.receivingStream.tryEmitError(new RuntimeInstanseException(reason));
+            this.receivingStream = null;
+        }
+    }
+
+    private void handlerError(Exception ex) {
+        log.error(String.format("doOnError (%s state is %s)", this.typeSideCommunication,
+                this.statePhase), ex);
+
+        this.tcp.emitEvent(this.number, ProtocolEventKind.ERROR, this.statePhase, ex.getMessage());
+
+        completeDelivery(DeliveryStatus.ABORTED, ex.getMessage());
+        takeScenarioMessage();
+
+        // the remote side is given time to notice the error, then the line is released
+        this.recovering = true;
+        cancelPhaseTimer();
+
+        schedule(ERROR_RECOVERY_DELAY_MILLIS, () -> {
+            this.recovering = false;
+
+            discardReceivedMessage("Error while receiving the message");
+
+            this.statePhase = State.NEUTRAL;
+
+            sendToRemoteSide(new byte[] { CommonCommandASTM1381.EOT.getNumber() });
+
+            bidForLineIfWorkQueued();
+        });
+    }
+
+    /*
+     * Send ENQ after a delay if the line is still being established by us
+     * (Отправить ENQ после задержки, если линия все еще устанавливается нами)
+     */
+    private void bidForLineLater(long delayMillis) {
+        schedule(delayMillis, () -> {
+            this.enqScheduled = false;
+            if (this.statePhase == State.ESTABLISHMENT_MYSELF) {
+                sendToRemoteSide(new byte[] { CommonCommandASTM1381.ENQ.getNumber() });
+            }
+        });
+        this.enqScheduled = true;
+    }
+
+    /*
+     * Run the action on the event loop of the channel after a delay, the
+     * previous pending action is cancelled
+     * (Выполнить действие в event loop канала после задержки, предыдущее
+     * отложенное действие отменяется)
+     */
+    private void schedule(long delayMillis, Runnable action) {
+        if (this.pendingTimer != null) {
+            this.pendingTimer.cancel(false);
+        }
+        this.enqScheduled = false;
+
+        this.pendingTimer = this.connection
+                .channel()
+                .eventLoop()
+                .schedule(() -> {
+                    this.pendingTimer = null;
+                    try {
+                        action.run();
+                        if (!this.recovering) {
+                            restartPhaseTimer();
+                        }
+                    } catch (Exception ex) {
+                        handlerError(ex);
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Arm the timer of the phase the session is in now, the timer of the
+     * previous phase is cancelled (6.5.2). Every received or sent character
+     * restarts it, NEUTRAL has no timer and the line stays open. The
+     * establishment timer is armed once our ENQ is written, not while it waits.
+     * (Запустить таймер текущей фазы, таймер предыдущей фазы отменяется.
+     * Каждый принятый или отправленный символ перезапускает его, в NEUTRAL
+     * таймера нет и линия остается открытой. Таймер установления запускается,
+     * когда наш ENQ записан, а не пока он ждет.)
+     */
+    private void restartPhaseTimer() {
+        cancelPhaseTimer();
+
+        Duration timeout;
+        switch (this.statePhase) {
+            case ESTABLISHMENT_MYSELF:
+                if (this.enqScheduled) {
+                    return;
+                }
+                timeout = this.tcp.getEstablishmentTimer();
+                break;
+            case TRANSFER_MYSELF:
+                timeout = this.tcp.getSenderTimer();
+                break;
+            case ESTABLISHMENT_REMOTE_SIDE:
+            case TRANSFER_REMOTE_SIDE:
+                timeout = this.tcp.getReceiverTimer();
+                break;
+            default:
+                return;
+        }
+
+        if (this.connection.isDisposed()) {
+            return;
+        }
+
+        State armedPhase = this.statePhase;
+
+        this.phaseTimer = this.connection
+                .channel()
+                .eventLoop()
+                .schedule(() -> {
+                    this.phaseTimer = null;
+                    if (this.statePhase == armedPhase && !this.recovering) {
+                        try {
+                            handlerTimeout(armedPhase, timeout);
+                        } catch (Exception ex) {
+                            handlerError(ex);
+                        }
+                    }
+                }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPhaseTimer() {
+        if (this.phaseTimer != null) {
+            this.phaseTimer.cancel(false);
+            this.phaseTimer = null;
+        }
+    }
+
+    /*
+     * The sender proceeds to the termination phase, the receiver discards the
+     * incomplete message and regards the line as neutral (6.5.2). The message
+     * of the client is aborted like after too many retransmits, the scenario
+     * message of the server is sent again. Then the line is bid for again if
+     * there is work.
+     * (Отправитель переходит в фазу завершения, получатель отбрасывает
+     * незавершенное сообщение и считает линию нейтральной. Сообщение клиента
+     * прерывается, как после слишком большого числа повторов, сообщение
+     * сценария сервера отправляется снова. Затем, если есть работа, линия
+     * запрашивается снова.)
+     */
+    private void handlerTimeout(State phase, Duration timeout) {
+        log.info("Timeout {} ms ({} state is {})", timeout.toMillis(), this.typeSideCommunication, phase);
+
+        String reason = String.format("Timeout %d ms", timeout.toMillis());
+
+        this.tcp.emitEvent(this.number, ProtocolEventKind.TIMEOUT, phase, String.format("timeout %d ms", timeout.toMillis()));
+
+        abortOutboundMessage(reason);
+        this.scenarioSendPending = false;
+
+        finalizeReceiveData();
+        finalizeSendData();
+        discardReceivedMessage(reason);
+
+        this.statePhase = State.NEUTRAL;
+
+        if (phase == State.ESTABLISHMENT_MYSELF || phase == State.TRANSFER_MYSELF) {
+            sendToRemoteSide(new byte[] { CommonCommandASTM1381.EOT.getNumber() });
+        }
+
+        bidForLineIfWorkQueued();
+
+        restartPhaseTimer();
+    }
+
+    /*
+     * The action is looked up in the table of the side and counted
+     * (Действие берется из таблицы стороны и подсчитывается)
+     */
+    private void handlerCommand(CommonCommandASTM1381 command) {
+        State state = this.statePhase;
+        TransitionASTM1381 transition = this.transitions.get(state, command);
+
+        this.tcp.countTransition(state, command);
+
+        transition.apply(this, command);
+    }
+
+    /*
+     * ENQ to the server in NEUTRAL: answered by the next scenario entry
+     * (ENQ серверу в NEUTRAL: ответ по следующей записи сценария)
+     */
+    void answerEnqByScenario() {
+        if (!this.scenario.isReady()) {
+
+            // the next entry of the flow has not arrived, the client bids again later
+            sendToRemoteSide(new byte[] { CommonCommandASTM1381.NAK.getNumber() });
+
+        } else if (nextScenarioMessage() instanceof SendFrame) {
+
+            // the server (instrument) has priority, the client will yield to its ENQ
+            prepareScenarioSend((SendFrame) nextScenarioMessage());
+
+        } else if (nextScenarioMessage() instanceof ReceiveFrame) {
+
+            ReceiveFrame receiveFrame = (ReceiveFrame) nextScenarioMessage();
+
+            CommonCommandASTM1381 ackOrNak;
+
+            if (receiveFrame.getNakStartCommunication() == NAKStartCommunication.WITH_NAK) {
+                this.statePhase = State.ESTABLISHMENT_REMOTE_SIDE;
+                ackOrNak = CommonCommandASTM1381.NAK;
+            } else {
+                this.statePhase = State.TRANSFER_REMOTE_SIDE;
+                this.currentFrameNumberReceive = 0;
+                ackOrNak = CommonCommandASTM1381.ACK;
+
+            }
+
+            sendToRemoteSide(new byte[] { ackOrNak.getNumber() });
+
+            this.imitationErrorAmount = receiveFrame.getErrors();
+            this.shouldBeReceiveBytes = receiveFrame.getCompiled() == null
+                    ? receiveFrame.getFrame().getBytes(this.tcp.getCharset())
+                    : receiveFrame.getCompiled().toByteArray();
+
+            this.scenario.advance();
+
+        } else {
+            sendToRemoteSide(new byte[] { CommonCommandASTM1381.ACK.getNumber() });
+            this.statePhase = State.TRANSFER_REMOTE_SIDE;
+            this.currentFrameNumberReceive = 0;
+
+        }
+    }
+
+    /*
+     * ENQ is accepted, the remote side transfers (ENQ принят, передает удаленная сторона)
+     */
+    void acceptEnq() {
+        this.statePhase = State.TRANSFER_REMOTE_SIDE;
+        this.currentFrameNumberReceive = 0;
+
+        sendToRemoteSide(new byte[] { CommonCommandASTM1381.ACK.getNumber() });
+    }
+
+    /*
+     * Contention, the server (instrument) bids again a little later
+     * (Конфликт, сервер (прибор) претендует снова чуть позже)
+     */
+    void bidAgainOnContention() {
+        bidForLineLater(this.tcp.getContentionTimer().toMillis());
+    }
+
+    /*
+     * Our ENQ is accepted, the first frame is sent (Наш ENQ принят, отправляется первый фрейм)
+     */
+    void startTransfer() {
+        initSendData();
+
+        this.statePhase = State.TRANSFER_MYSELF;
+
+        // some bytes from external environment to send
+        try {
+            if (typeSideCommunication == TypeSideCommunication.SERVER && this.currentCompiledMessage != null) {
+                startSegmenting(new FrameSegmenterASTM1381(this.currentCompiledMessage));
+            } else if (typeSideCommunication == TypeSideCommunication.SERVER) {
+                int maxFrameSize = currentCrushingType.getMaxTextLength(currentSendMessageBytesSimulate.length);
+
+                startSegmenting(new FrameSegmenterASTM1381(this.currentSendMessageBytesSimulate, maxFrameSize,
+                        false));
+            } else {
+                if (!pollOutboundMessage()) {
+                    throw new RuntimeInstanseException("Bytes for send is null");
+                }
+            }
+
+        } catch (Exception ex) {
+            throw new RuntimeInstanseException("Nothing to send", ex);
+        }
+
+        this.messagesInTransfer = 1;
+
+        this.sendNextFrameWhenReady();
+        numberOfAttemptsToSendMessage = 1;
+    }
+
+    /*
+     * The frame is accepted (Фрейм принят)
+     */
+    void frameAccepted() {
+        releaseCurrentFrame();
+
+        if (!this.segmenter.hasNext()) {
+
+            completeDelivery(DeliveryStatus.DELIVERED, null);
+            takeScenarioMessage();
+
+            // several queued messages in one transfer phase, FN keeps counting (6.3.1)
+            if (this.typeSideCommunication == TypeSideCommunication.CLIENT
+                    && this.messagesInTransfer < this.tcp.getMaxMessagesPerTransfer()
+                    && pollOutboundMessage()) {
+
+                this.messagesInTransfer++;
+
+                this.sendNextFrameWhenReady();
+                numberOfAttemptsToSendMessage = 1;
+
+            } else {
+
+                this.statePhase = State.NEUTRAL;
+
+                sendToRemoteSide(new byte[] { CommonCommandASTM1381.EOT.getNumber() });
+
+                finalizeSendData();
+
+                bidForLineIfWorkQueued();
+            }
+
+        } else {
+            this.sendNextFrameWhenReady();
+            numberOfAttemptsToSendMessage = 1;
+        }
+    }
+
+    /*
+     * The remote side refused our ENQ (Удаленная сторона отклонила наш ENQ)
+     */
+    void remoteSideBusy() {
+        // the remote side is busy, bid again later
+        bidForLineLater(this.tcp.getBusyTimer().toMillis());
+    }
+
+    /*
+     * The frame is not accepted (Фрейм не принят)
+     */
+    void frameRejected() {
+        /*
+         * 6.5.1.2 Upon receiving a <NAK> or any character except an <ACK> or <EOT> (a
+         * <NAK> condition), the
+         * sender increments a retransmit counter and retransmits the frame. If this
+         * counter shows a single frame was sent and
+         * not accepted six times, the sender must abort this message by proceeding to
+         * the termination phase. An abort should
+         * be extremely rare, but it provides a mechanism to escape from a condition
+         * where the transfer phase cannot continue.
+         */
+
+        if (numberOfAttemptsToSendMessage >= this.tcp.getMaxFrameAttempts()) {
+
+            log.info("Too much retransmits the frame");
+
+            abortOutboundMessage("Too much retransmits the frame");
+            takeScenarioMessage();
+
+            this.statePhase = State.NEUTRAL;
+
+            sendToRemoteSide(new byte[] { CommonCommandASTM1381.EOT.getNumber() });
+
+            finalizeSendData();
+
+            // the rest of the queue does not wait for the aborted message
+            bidForLineIfWorkQueued();
+
+        } else {
+            this.sendCurrentFrameToRemoteSide();
+            numberOfAttemptsToSendMessage++;
+            this.retransmits++;
+        }
+    }
+
+    /*
+     * The transfer of the message of the client is aborted, it is put back
+     * into the queue if the retry policy allows, otherwise its receipt is
+     * ABORTED (Передача сообщения клиента прервана, оно возвращается в
+     * очередь, если позволяет политика повторов, иначе его квитанция ABORTED)
+     */
+    private void abortOutboundMessage(String reason) {
+        if (this.currentOutboundMessage != null
+                && this.tcp.abortAndRequeue(this.currentOutboundMessage, this.connection.channel().eventLoop())) {
+            // the receipt waits for the next attempt
+            this.currentOutboundMessage = null;
+        } else {
+            completeDelivery(DeliveryStatus.ABORTED, reason);
+        }
+    }
+
+    /*
+     * EOT, the line is free (EOT, линия свободна)
+     */
+    void endOfTransmission() {
+        if (!this.bufferReceiveFramesData.isEmpty() || this.receivingStream != null) {
+
+            log.info("The message without ETX is discarded ({} state is {})",
+                    this.typeSideCommunication, this.statePhase);
+
+            discardReceivedMessage("The message without ETX");
+        }
+
+        finalizeReceiveData();
+        finalizeSendData();
+
+        if (this.typeSideCommunication == TypeSideCommunication.SERVER
+                && this.statePhase == State.TRANSFER_REMOTE_SIDE) {
+
+            currentSendMessageBytesSimulate = null;
+            currentCompiledMessage = null;
+            imitationErrorAmount = -1;
+            shouldBeReceiveBytes = null;
+
+            continueScenario();
+
+        } else {
+            this.statePhase = State.NEUTRAL;
+
+            bidForLineIfWorkQueued();
+        }
+    }
+
+    /*
+     * The client takes the next queued message, false if there is none
+     * (Клиент берет следующее сообщение из очереди, false если его нет)
+     */
+    private boolean pollOutboundMessage() {
+        OutboundMessage message = this.tcp.pollMessageForNetwork();
+        if (message == null) {
+            return false;
+        }
+
+        startSegmenting(message.segment(this.connection.channel().eventLoop(), this.tcp.getMaxFrameTextLength(),
+                this.tcp.isAlignFramesToRecords()));
+
+        this.currentOutboundMessage = message;
+        this.retransmits = 0;
+
+        return true;
+    }
+
+    /*
+     * Frames of the message are produced one by one, the frame number
+     * continues from the previous message of the transfer phase
+     * (Фреймы сообщения производятся по одному, номер фрейма продолжается от
+     * предыдущего сообщения фазы передачи)
+     */
+    private void startSegmenting(FrameSegmenterASTM1381 frameSegmenter) {
+        releaseFramesToSend();
+
+        this.segmenter = frameSegmenter;
+    }
+
+    /*
+     * A streamed message may not have the text of the next frame yet, the
+     * frame is sent as soon as it arrives
+     * (У потокового сообщения может еще не быть текста следующего фрейма,
+     * фрейм отправляется, как только он поступит)
+     */
+    private void sendNextFrameWhenReady() {
+        if (this.segmenter.isReady()) {
+            sendNextFrameToRemoteSide();
+            return;
+        }
+
+        FrameSegmenterASTM1381 waiting = this.segmenter;
+
+        waiting.onReady(() -> {
+            if (this.segmenter != waiting || this.statePhase != State.TRANSFER_MYSELF || this.recovering) {
+                return;
+            }
+            try {
+                sendNextFrameToRemoteSide();
+                restartPhaseTimer();
+            } catch (Exception ex) {
+                handlerError(ex);
+            }
+        });
+    }
+
+    private byte nextFrameNumber(byte currentFrameNumber) {
+        currentFrameNumber = (byte) ((currentFrameNumber + 1) % 8);
+        return currentFrameNumber;
+    }
+
+    private void sendToRemoteSide(byte[] sendData) {
+        sendToRemoteSide(Unpooled.wrappedBuffer(sendData));
+    }
+
+    private void sendToRemoteSide(ByteBuf sendData) {
+
+        int length = sendData.readableBytes();
+
+        // rendered only if logged or listened to, before the buffer is written
+        Object displayStr = length == 1
+                ? CommonCommandASTM1381.getCommonCommandByNumber(sendData.getByte(sendData.readerIndex()))
+                : DisplayASTM1381.lazy(sendData, this.tcp.getCharset());
+
+        log.info("{}\r\n{} SENT\r\n{}\r\n({} state is {})", length == 1 ? "command" : "frame",
+                this.typeSideCommunication == TypeSideCommunication.SERVER ? SERVER_TO_CLIENT : CLIENT_TO_SERVER,
+                displayStr, this.typeSideCommunication, this.statePhase);
+
+        this.tcp.emitEvent(this.number, length == 1 ? ProtocolEventKind.COMMAND_SENT : ProtocolEventKind.FRAME_SENT,
+                Direction.TO_REMOTE_SIDE, this.statePhase, sendData);
+
+        // the buffer is released by Netty after it is written
+        this.outbound
+                .send(Mono.just(sendData))
+                .then()
+                .subscribe(
+                        vvoid -> {
+                        },
+                        ex -> {
+                            throw new RuntimeInstanseException(
+                                    String.format("Error while sending data (%d bytes)", length), ex);
+                        });
+    }
+
+    private void sendNextFrameToRemoteSide() {
+        if (this.segmenter.getError() != null) {
+            throw new RuntimeInstanseException("Message stream failed", this.segmenter.getError());
+        }
+
+        currentFrameNumberSend = nextFrameNumber(currentFrameNumberSend);
+
+        this.currentFrame = this.segmenter.next(this.outbound.alloc(), this.tcp.isPreferDirectBuffer(),
+                currentFrameNumberSend);
+
+        sendCurrentFrameToRemoteSide();
+    }
+
+    private void sendCurrentFrameToRemoteSide() {
+        ByteBuf storedFrame = this.currentFrame;
+
+        ByteBuf currentFrame;
+
+        if (this.imitationErrorAmount > 0 && !this.segmenter.hasNext()) {
+            // the stored frame stays intact for the retransmission
+            currentFrame = storedFrame.copy();
+            currentFrame.setByte(4, currentFrame.getByte(4) + 4);
+            this.imitationErrorAmount--;
+        } else {
+            currentFrame = storedFrame.retainedDuplicate();
+        }
+
+        sendToRemoteSide(currentFrame);
+    }
+
+}
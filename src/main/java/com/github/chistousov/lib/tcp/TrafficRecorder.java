@@ -0,0 +1,455 @@
+package com.github.chistousov.lib.tcp;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.github.chistousov.lib.TypeSideCommunication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Records the messages of a live session as a scenario (Записывает сообщения живой сессии как сценарий).
+ * </p>
+ * <p>
+ * Messages are assembled from the events of the TCP, the same as in
+ * {@link TCP#getEvents()}, but taken on the thread that emits them, so a
+ * slow subscriber of the events does not make the recorder lose frames. A
+ * frame with a wrong checksum is skipped, a frame sent again with the same FN
+ * replaces the previous one, the message ends with the ETX frame. The scenario
+ * is written from the side of the analyzer (the server): messages of the
+ * analyzer become {@code @send}, messages of the LIS {@code @receive}. The
+ * scenario starts with {@code @comments}, every entry is preceded by a
+ * {@code #} comment with its time, the delay after the previous one and the
+ * text lengths of its frames.
+ * </p>
+ * <p>
+ * A replay keeps the messages, not the timing and not the frames: the delay
+ * and the frame lengths are in the comments only, a replay is paced by the
+ * scenario pacing of the server and splits a message recorded as
+ * {@code parts} into frames of 50 characters. A message that would not be
+ * replayed as it was sent is not written, a {@code #} comment is written in
+ * its place and a warning is logged: it does not end with CR or CR LF, a
+ * record of it holds another CR or LF or starts with {@code @} or {@code #},
+ * or it is not text of the charset. Lines end with LF on every platform.
+ * </p>
+ * <p>
+ * One session is recorded: the first one whose frames are seen, until it is
+ * disconnected. Frames of other sessions of a server connected meanwhile are
+ * skipped with a warning.
+ * </p>
+ * <p>
+ * The event loop only copies frames, entries are formatted and written by
+ * a thread of the recorder, the file is flushed whenever there is nothing
+ * more to write.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class TrafficRecorder implements Closeable {
+    private static Logger log = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private final TCP tcp;
+    private final Path scenario;
+    private final Charset charset;
+
+    private final Scheduler scheduler;
+    private final BufferedWriter writer;
+
+    private final Consumer<ProtocolEvent> listener = this::onEvent;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // messages of the analyzer (сообщения анализатора)
+    private final Assembler fromAnalyzer = new Assembler(true);
+    // messages of the LIS (сообщения LIS)
+    private final Assembler fromLis = new Assembler(false);
+
+    // which direction is the analyzer (какое направление - анализатор)
+    private final Direction directionOfAnalyzer;
+
+    // assembled, not yet written (собраны, еще не записаны)
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drains = new AtomicInteger();
+
+    private final AtomicLong recordedMessages = new AtomicLong();
+
+    // the recorded session, 0 until its first frame (записываемая сессия, 0 до ее первого фрейма)
+    private int session;
+    // the last skipped session, to warn once (последняя пропущенная сессия, чтобы предупредить один раз)
+    private int skippedSession;
+
+    // written by the thread of the recorder only
+    private long previousTimestamp;
+    private boolean failed;
+
+    private TrafficRecorder(TCP tcp, Path scenario) throws IOException {
+        this.tcp = tcp;
+        this.scenario = scenario;
+        this.charset = tcp.getCharset();
+        this.directionOfAnalyzer = tcp.getTypeSideCommunication() == TypeSideCommunication.SERVER
+                ? Direction.TO_REMOTE_SIDE
+                : Direction.FROM_REMOTE_SIDE;
+
+        this.writer = Files.newBufferedWriter(scenario, this.charset);
+        this.writer.write("@comments\n");
+        this.scheduler = Schedulers.newSingle("traffic-recorder");
+
+        tcp.addEventListener(this.listener);
+    }
+
+    /**
+     * <p>
+     * Start recording the sessions of a TCP into a scenario file, the file is replaced
+     * (Начать запись сессий TCP в файл сценария, файл заменяется)
+     * </p>
+     *
+     * @param tcp - client or server (клиент или сервер)
+     * @param scenario - file of the scenario, written in the charset of the TCP (файл сценария, пишется в кодировке TCP)
+     * @throws IOException if the file cannot be created (если файл не создается)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static TrafficRecorder record(TCP tcp, Path scenario) throws IOException {
+        return new TrafficRecorder(tcp, scenario);
+    }
+
+    /**
+     * <p>
+     * Messages written to the scenario so far (Сообщений записано в сценарий к этому моменту)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public long getRecordedMessages() {
+        return this.recordedMessages.get();
+    }
+
+    /**
+     * <p>
+     * Stop recording, the messages assembled so far are written and the file
+     * is closed. Blocks, not to be called from an event loop
+     * (Остановить запись, собранные сообщения записываются и файл
+     * закрывается. Блокирует, не вызывать из event loop)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    @Override
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        this.tcp.removeEventListener(this.listener);
+
+        Mono.fromRunnable(() -> {
+            drain();
+            try {
+                this.writer.close();
+            } catch (IOException ex) {
+                log.error("Error closing the recorded scenario {}", this.scenario, ex);
+            }
+        }).subscribeOn(this.scheduler).block();
+
+        this.scheduler.dispose();
+    }
+
+    /*
+     * On the thread that emitted the event, only frames are copied here
+     * (В потоке, выпустившем событие, здесь только копируются фреймы)
+     */
+    private synchronized void onEvent(ProtocolEvent event) {
+        switch (event.getKind()) {
+            case FRAME_SENT:
+            case FRAME_RECEIVED:
+                if (!isRecorded(event.getSession())) {
+                    break;
+                }
+                Assembler assembler = event.getDirection() == this.directionOfAnalyzer
+                        ? this.fromAnalyzer
+                        : this.fromLis;
+                Entry entry = assembler.frame(event.getPayload(), event.getTimestamp());
+                if (entry != null) {
+                    this.entries.offer(entry);
+                    if (this.drains.getAndIncrement() == 0) {
+                        this.scheduler.schedule(this::drainAll);
+                    }
+                }
+                break;
+            case COMMAND_SENT:
+            case COMMAND_RECEIVED:
+                // EOT ends the transfer phase, FN starts anew
+                if (event.getSession() == this.session
+                        && event.getPayload().get(0) == CommonCommandASTM1381.EOT.getNumber()) {
+                    this.fromAnalyzer.reset();
+                    this.fromLis.reset();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /*
+     * The first session is recorded until it is disconnected, then the next one
+     * (Записывается первая сессия, пока она не отключится, затем следующая)
+     */
+    private boolean isRecorded(int session) {
+        if (session == this.session) {
+            return true;
+        }
+
+        if (this.session == 0 || !this.tcp.isSessionOpen(this.session)) {
+            this.session = session;
+            this.fromAnalyzer.reset();
+            this.fromLis.reset();
+            return true;
+        }
+
+        if (session != this.skippedSession) {
+            this.skippedSession = session;
+            log.warn("Frames of session {} are not recorded into {}, session {} is recorded", session,
+                    this.scenario, this.session);
+        }
+        return false;
+    }
+
+    private void drainAll() {
+        int missed = 1;
+        do {
+            drain();
+            missed = this.drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain() {
+        if (this.failed) {
+            this.entries.clear();
+            return;
+        }
+
+        try {
+            for (Entry entry = this.entries.poll(); entry != null; entry = this.entries.poll()) {
+                if (write(entry)) {
+                    this.recordedMessages.incrementAndGet();
+                }
+            }
+            this.writer.flush();
+        } catch (IOException ex) {
+            this.failed = true;
+            this.entries.clear();
+            log.error("Error writing the recorded scenario {}, recording is stopped", this.scenario, ex);
+        }
+    }
+
+    /*
+     * # time +delay ms frames length,length
+     * @send fully|parts withouterror 0D or @receive withoutNAK withouterror 0D
+     * lines of the message, false if only the comment is written
+     */
+    private boolean write(Entry entry) throws IOException {
+        String text = new String(entry.message, this.charset);
+        String endLine = text.endsWith("\r\n") ? "\r\n" : "\r";
+
+        this.writer.write("# ");
+        this.writer.write(Instant.ofEpochMilli(entry.timestamp).toString());
+        if (this.previousTimestamp != 0) {
+            this.writer.write(" +");
+            this.writer.write(Long.toString(entry.timestamp - this.previousTimestamp));
+            this.writer.write(" ms");
+        }
+        this.writer.write(" frames ");
+        for (int i = 0; i < entry.frameLengths.length; i++) {
+            if (i > 0) {
+                this.writer.write(',');
+            }
+            this.writer.write(Integer.toString(entry.frameLengths[i]));
+        }
+        this.writer.write('\n');
+        this.previousTimestamp = entry.timestamp;
+
+        String reason = notReplayed(entry.message, text, endLine);
+        if (reason != null) {
+            this.writer.write("# not recorded, ");
+            this.writer.write(reason);
+            this.writer.write('\n');
+            log.warn("A message is not recorded into {}, {}", this.scenario, reason);
+            return false;
+        }
+
+        if (entry.fromAnalyzer) {
+            this.writer.write(entry.frameLengths.length > 1
+                    ? "@send parts withouterror "
+                    : "@send fully withouterror ");
+        } else {
+            this.writer.write("@receive withoutNAK withouterror ");
+        }
+        this.writer.write(endLine.length() == 2 ? "0D0A" : "0D");
+        this.writer.write('\n');
+
+        for (int start = 0; start < text.length();) {
+            int end = text.indexOf(endLine, start);
+            this.writer.write(text, start, end - start);
+            this.writer.write('\n');
+            start = end + endLine.length();
+        }
+        return true;
+    }
+
+    /*
+     * A replay ends every line with the end of line and splits at CR and LF,
+     * null if the message is read back as it was sent
+     * (Воспроизведение завершает каждую строку концом строки и делит по CR и LF,
+     * null, если сообщение читается таким, каким было отправлено)
+     */
+    private String notReplayed(byte[] message, String text, String endLine) {
+        if (!Arrays.equals(text.getBytes(this.charset), message)) {
+            return "it is not text of " + this.charset;
+        }
+        if (!text.endsWith(endLine)) {
+            return "it does not end with CR";
+        }
+        for (int start = 0; start < text.length();) {
+            int end = text.indexOf(endLine, start);
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '\r' || c == '\n') {
+                    return "a record of it holds a lone CR or LF";
+                }
+            }
+            if (end > start && (text.charAt(start) == '@' || text.charAt(start) == '#')) {
+                return "a record of it starts with @ or #";
+            }
+            start = end + endLine.length();
+        }
+        return null;
+    }
+
+    /*
+     * Message assembled in one direction (Сообщение, собранное в одном направлении)
+     */
+    private static final class Entry {
+        private final boolean fromAnalyzer;
+        private final byte[] message;
+        // text lengths of the recorded frames (длины текста записанных фреймов)
+        private final int[] frameLengths;
+        private final long timestamp;
+
+        private Entry(boolean fromAnalyzer, byte[] message, int[] frameLengths, long timestamp) {
+            this.fromAnalyzer = fromAnalyzer;
+            this.message = message;
+            this.frameLengths = frameLengths;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /*
+     * Text of the frames of one direction (Текст фреймов одного направления)
+     */
+    private static final class Assembler {
+        private final boolean fromAnalyzer;
+
+        private byte[] text = new byte[256];
+        private int length;
+        private int frames;
+        private int[] frameLengths = new int[8];
+
+        // the last frame, to replace it if it is sent again
+        private int lastFrameStart;
+        private byte lastFrameNumber = -1;
+
+        private long timestamp;
+
+        private Assembler(boolean fromAnalyzer) {
+            this.fromAnalyzer = fromAnalyzer;
+        }
+
+        /*
+         * STX FN text ETB/ETX C1 C2 CR LF, the message if this frame ends it
+         */
+        private Entry frame(ByteBuffer frame, long timestamp) {
+            int size = frame.remaining();
+            int textLength = size - FrameEncoderASTM1381.FRAME_OVERHEAD;
+            if (textLength < 0 || frame.get(0) != CommonCommandASTM1381.STX.getNumber()) {
+                return null;
+            }
+
+            byte end = frame.get(size - 5);
+            int checksum = (frame.get(1) & 0xFF) + (end & 0xFF);
+            for (int i = 2; i < size - 5; i++) {
+                checksum += frame.get(i) & 0xFF;
+            }
+            if ((end != CommonCommandASTM1381.ETB.getNumber() && end != CommonCommandASTM1381.ETX.getNumber())
+                    || frame.get(size - 4) != ChecksumASTM1381.c1(checksum)
+                    || frame.get(size - 3) != ChecksumASTM1381.c2(checksum)) {
+                return null;
+            }
+
+            byte frameNumber = frame.get(1);
+            if (frameNumber == this.lastFrameNumber) {
+                if (this.frames == 0) {
+                    // the end of a recorded message sent again
+                    return null;
+                }
+                this.length = this.lastFrameStart;
+                this.frames--;
+            }
+
+            if (this.frames == 0) {
+                this.timestamp = timestamp;
+            }
+            if (this.length + textLength > this.text.length) {
+                this.text = Arrays.copyOf(this.text, Math.max(this.length + textLength, this.text.length * 2));
+            }
+            if (this.frames == this.frameLengths.length) {
+                this.frameLengths = Arrays.copyOf(this.frameLengths, this.frames * 2);
+            }
+            this.lastFrameStart = this.length;
+            this.lastFrameNumber = frameNumber;
+            for (int i = 0; i < textLength; i++) {
+                this.text[this.length++] = frame.get(2 + i);
+            }
+            this.frameLengths[this.frames++] = textLength;
+
+            if (end != CommonCommandASTM1381.ETX.getNumber()) {
+                return null;
+            }
+
+            // an empty message is not a scenario entry
+            Entry entry = this.length == 0
+                    ? null
+                    : new Entry(this.fromAnalyzer, Arrays.copyOf(this.text, this.length),
+                            Arrays.copyOf(this.frameLengths, this.frames), this.timestamp);
+            this.length = 0;
+            this.frames = 0;
+            return entry;
+        }
+
+        private void reset() {
+            this.length = 0;
+            this.frames = 0;
+            this.lastFrameNumber = -1;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.chistousov.lib.tcp;
+
+import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+
+/**
+ * <p>
+ * What a session does on a command received in a phase (Что делает сессия при получении команды в фазе).
+ * </p>
+ * <p>
+ * ANSWER_ENQ_BY_SCENARIO - the server answers ENQ by the next scenario entry (сервер отвечает на ENQ по следующей записи сценария),
+ * ACCEPT_ENQ - ACK, the remote side transfers (ACK, передает удаленная сторона),
+ * CONTENTION - both bid, the server bids again later (обе стороны претендуют, сервер претендует позже снова),
+ * START_TRANSFER - ENQ is accepted, the first frame is sent (ENQ принят, отправляется первый фрейм),
+ * FRAME_ACCEPTED - the next frame, message or EOT is sent (отправляется следующий фрейм, сообщение или EOT),
+ * BUSY - ENQ is refused, bid again after the busy timer (ENQ отклонен, повторить после таймера занятости),
+ * FRAME_REJECTED - the frame is sent again or the message is aborted (фрейм отправляется снова или сообщение прерывается),
+ * END_OF_TRANSMISSION - EOT, the line is free (EOT, линия свободна),
+ * UNEXPECTED - the command is not allowed in the phase (команда недопустима в фазе)
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public enum TransitionASTM1381 {
+    ANSWER_ENQ_BY_SCENARIO {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.answerEnqByScenario();
+        }
+    },
+    ACCEPT_ENQ {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.acceptEnq();
+        }
+    },
+    CONTENTION {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.bidAgainOnContention();
+        }
+    },
+    START_TRANSFER {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.startTransfer();
+        }
+    },
+    FRAME_ACCEPTED {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.frameAccepted();
+        }
+    },
+    BUSY {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.remoteSideBusy();
+        }
+    },
+    FRAME_REJECTED {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.frameRejected();
+        }
+    },
+    END_OF_TRANSMISSION {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            session.endOfTransmission();
+        }
+    },
+    UNEXPECTED {
+        @Override
+        void apply(TCPSession session, CommonCommandASTM1381 command) {
+            throw new RuntimeInstanseException(String.format("Unable to execute received command %s", command));
+        }
+    };
+
+    abstract void apply(TCPSession session, CommonCommandASTM1381 command);
+}
@@ -0,0 +1,118 @@
+package com.github.chistousov.lib.tcp;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.github.chistousov.lib.TypeSideCommunication;
+
+/**
+ * <p>
+ * Transitions of one side: phase and received command to what is done
+ * (Переходы одной стороны: фаза и принятая команда в выполняемое действие).
+ * </p>
+ * <p>
+ * The client is the computer system and yields to the ENQ of the instrument
+ * on contention, the server simulates the instrument and follows its
+ * scenario (6.2.7.1). A command that is not in the table is
+ * {@link TransitionASTM1381#UNEXPECTED}.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class TransitionTableASTM1381 {
+
+    private static final TransitionTableASTM1381 CLIENT = client();
+    private static final TransitionTableASTM1381 SERVER = server();
+
+    private final EnumMap<State, EnumMap<CommonCommandASTM1381, TransitionASTM1381>> transitions =
+            new EnumMap<>(State.class);
+
+    private TransitionTableASTM1381() {
+        for (State state : State.values()) {
+            this.transitions.put(state, new EnumMap<>(CommonCommandASTM1381.class));
+        }
+    }
+
+    /**
+     * <p>
+     * Table of a side (Таблица стороны)
+     * </p>
+     *
+     * @param typeSideCommunication - client or server (клиент или сервер)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static TransitionTableASTM1381 of(TypeSideCommunication typeSideCommunication) {
+        return typeSideCommunication == TypeSideCommunication.SERVER ? SERVER : CLIENT;
+    }
+
+    /**
+     * <p>
+     * What is done on the command in the phase (Что делается при команде в фазе)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public TransitionASTM1381 get(State state, CommonCommandASTM1381 command) {
+        TransitionASTM1381 transition = this.transitions.get(state).get(command);
+        return transition == null ? TransitionASTM1381.UNEXPECTED : transition;
+    }
+
+    /**
+     * <p>
+     * Allowed commands of the phase (Допустимые команды фазы)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Map<CommonCommandASTM1381, TransitionASTM1381> get(State state) {
+        return Collections.unmodifiableMap(this.transitions.get(state));
+    }
+
+    private static TransitionTableASTM1381 client() {
+        TransitionTableASTM1381 table = common();
+
+        table.put(State.NEUTRAL, CommonCommandASTM1381.ENQ, TransitionASTM1381.ACCEPT_ENQ);
+        // the computer system yields to the instrument (6.2.7.1)
+        table.put(State.ESTABLISHMENT_MYSELF, CommonCommandASTM1381.ENQ, TransitionASTM1381.ACCEPT_ENQ);
+        table.put(State.ESTABLISHMENT_REMOTE_SIDE, CommonCommandASTM1381.ENQ, TransitionASTM1381.ACCEPT_ENQ);
+
+        return table;
+    }
+
+    private static TransitionTableASTM1381 server() {
+        TransitionTableASTM1381 table = common();
+
+        table.put(State.NEUTRAL, CommonCommandASTM1381.ENQ, TransitionASTM1381.ANSWER_ENQ_BY_SCENARIO);
+        // the instrument has priority and bids again (6.2.7.1)
+        table.put(State.ESTABLISHMENT_MYSELF, CommonCommandASTM1381.ENQ, TransitionASTM1381.CONTENTION);
+        table.put(State.ESTABLISHMENT_REMOTE_SIDE, CommonCommandASTM1381.ENQ, TransitionASTM1381.ACCEPT_ENQ);
+
+        return table;
+    }
+
+    private static TransitionTableASTM1381 common() {
+        TransitionTableASTM1381 table = new TransitionTableASTM1381();
+
+        table.put(State.ESTABLISHMENT_MYSELF, CommonCommandASTM1381.ACK, TransitionASTM1381.START_TRANSFER);
+        table.put(State.ESTABLISHMENT_MYSELF, CommonCommandASTM1381.NAK, TransitionASTM1381.BUSY);
+        table.put(State.TRANSFER_MYSELF, CommonCommandASTM1381.ACK, TransitionASTM1381.FRAME_ACCEPTED);
+        table.put(State.TRANSFER_MYSELF, CommonCommandASTM1381.NAK, TransitionASTM1381.FRAME_REJECTED);
+
+        // EOT is accepted in every phase
+        for (State state : State.values()) {
+            table.put(state, CommonCommandASTM1381.EOT, TransitionASTM1381.END_OF_TRANSMISSION);
+        }
+
+        return table;
+    }
+
+    private void put(State state, CommonCommandASTM1381 command, TransitionASTM1381 transition) {
+        this.transitions.get(state).put(command, transition);
+    }
+}
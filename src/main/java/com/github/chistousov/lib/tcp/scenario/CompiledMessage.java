@@ -0,0 +1,153 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * Message of a compiled scenario (Сообщение скомпилированного сценария)
+ * </p>
+ * <p>
+ * A view of the image of the scenario: the encoded text of the message and,
+ * for a message to send, the length and checksum of the text of every frame.
+ * Nothing is copied or encoded when the message is replayed, the frame
+ * checksum is the stored one plus FN and ETB/ETX.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class CompiledMessage {
+
+    // frame table entry: text length (int) and text checksum (byte)
+    static final int FRAME_ENTRY_SIZE = 5;
+
+    // image of the scenario (образ сценария)
+    private final ByteBuffer image;
+
+    // charset the text was encoded with
+    private final Charset charset;
+
+    private final int textOffset;
+    private final int textLength;
+
+    private final int framesOffset;
+    private final int frameCount;
+
+    CompiledMessage(ByteBuffer image, Charset charset, int textOffset, int textLength, int framesOffset,
+            int frameCount) {
+        this.image = image;
+        this.charset = charset;
+        this.textOffset = textOffset;
+        this.textLength = textLength;
+        this.framesOffset = framesOffset;
+        this.frameCount = frameCount;
+    }
+
+    /**
+     * <p>
+     * Encoded text of the message, a read-only view of the image
+     * (Закодированный текст сообщения, представление образа только для чтения)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ByteBuffer getText() {
+        ByteBuffer text = this.image.duplicate();
+        text.limit(this.textOffset + this.textLength);
+        text.position(this.textOffset);
+        return text.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * <p>
+     * Length of the encoded text (Длина закодированного текста)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getLength() {
+        return this.textLength;
+    }
+
+    /**
+     * <p>
+     * Number of frames, 0 for a message to receive (Количество фреймов, 0 для принимаемого сообщения)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFrameCount() {
+        return this.frameCount;
+    }
+
+    /**
+     * <p>
+     * Text length of a frame (Длина текста фрейма)
+     * </p>
+     *
+     * @param index - frame 0..getFrameCount()-1 (фрейм 0..getFrameCount()-1)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFrameLength(int index) {
+        return this.image.getInt(frameEntry(index));
+    }
+
+    /**
+     * <p>
+     * Checksum 0-255 of the text of a frame, without FN and ETB/ETX
+     * (Контрольная сумма 0-255 текста фрейма, без FN и ETB/ETX)
+     * </p>
+     *
+     * @param index - frame 0..getFrameCount()-1 (фрейм 0..getFrameCount()-1)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getFrameTextChecksum(int index) {
+        return this.image.get(frameEntry(index) + 4) & 0xFF;
+    }
+
+    /**
+     * <p>
+     * Copy of the encoded text (Копия закодированного текста)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[this.textLength];
+        getText().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Decoded text, for logs (Декодированный текст, для логов)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public String decode() {
+        return this.charset.decode(getText()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return decode();
+    }
+
+    private int frameEntry(int index) {
+        if (index < 0 || index >= this.frameCount) {
+            throw new IndexOutOfBoundsException(String.format("Frame %d of %d", index, this.frameCount));
+        }
+        return this.framesOffset + index * FRAME_ENTRY_SIZE;
+    }
+}
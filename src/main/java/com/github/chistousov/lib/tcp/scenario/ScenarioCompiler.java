@@ -0,0 +1,102 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.chistousov.lib.tcp.ChecksumASTM1381;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.ReceiveFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
+
+/**
+ * <p>
+ * Compiles a scenario into an image for {@link ScenarioImage} (Компилирует сценарий в образ для {@link ScenarioImage}).
+ * </p>
+ * <p>
+ * The text of every message is encoded once, messages to send are split
+ * into frames as their crushing type requires and the checksum of the text
+ * of every frame is stored, so a server started from the image does neither.
+ * </p>
+ * <p>
+ * Placeholders of a {@code @template} scenario are filled in once, when the
+ * scenario is compiled, and {@code @repeat} blocks are unrolled, an endless
+ * one cannot be compiled.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ScenarioCompiler {
+
+    private ScenarioCompiler() {
+    }
+
+    /**
+     * <p>
+     * Compile a scenario (Скомпилировать сценарий)
+     * </p>
+     *
+     * @param scenario - file of the scenario (файл сценария)
+     * @param charset - charset of the scenario, the text is encoded with it (кодировка сценария, ею кодируется текст)
+     * @param image - file of the image, replaced if it exists (файл образа, заменяется, если существует)
+     * @return number of entries (количество записей)
+     * @throws IOException if a file cannot be read or written (если файл не читается или не пишется)
+     * @throws CreateFrameException if the scenario has an error (если в сценарии ошибка)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static int compile(Path scenario, Charset charset, Path image) throws IOException {
+        int entries = 0;
+
+        try (ScenarioReader reader = ScenarioReader.openFinite(scenario, charset);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(image)))) {
+
+            byte[] charsetName = charset.name().getBytes(StandardCharsets.US_ASCII);
+            out.writeInt(ScenarioImage.MAGIC);
+            out.writeByte(ScenarioImage.VERSION);
+            out.writeByte(charsetName.length);
+            out.write(charsetName);
+
+            for (AbstractFrame frame = reader.peek(); frame != null; reader.advance(), frame = reader.peek()) {
+                byte[] text = frame.getFrame().getBytes(charset);
+
+                if (frame instanceof SendFrame) {
+                    SendFrame sendFrame = (SendFrame) frame;
+
+                    out.writeByte(ScenarioImage.SEND);
+                    out.writeByte(sendFrame.getCrushingType().ordinal());
+                    out.writeByte(sendFrame.getErrors());
+                    out.writeInt(text.length);
+                    out.write(text);
+
+                    int maxTextLength = sendFrame.getCrushingType().getMaxTextLength(text.length);
+                    out.writeInt((text.length + maxTextLength - 1) / maxTextLength);
+                    for (int offset = 0; offset < text.length; offset += maxTextLength) {
+                        int length = Math.min(maxTextLength, text.length - offset);
+                        out.writeInt(length);
+                        out.writeByte(ChecksumASTM1381.calculate(text, offset, offset + length));
+                    }
+                } else {
+                    ReceiveFrame receiveFrame = (ReceiveFrame) frame;
+
+                    out.writeByte(ScenarioImage.RECEIVE);
+                    out.writeByte(receiveFrame.getNakStartCommunication().ordinal());
+                    out.writeByte(receiveFrame.getErrors());
+                    out.writeInt(text.length);
+                    out.write(text);
+                    out.writeInt(0);
+                }
+
+                entries++;
+            }
+        }
+
+        return entries;
+    }
+}
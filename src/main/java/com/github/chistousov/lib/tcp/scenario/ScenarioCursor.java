@@ -0,0 +1,83 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.io.Closeable;
+
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+
+/**
+ * <p>
+ * Position of a session in its scenario (Позиция сессии в ее сценарии)
+ * </p>
+ * <p>
+ * Every session of the server has its own cursor, entries are taken one by
+ * one and are not kept after they are passed.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public interface ScenarioCursor extends Closeable {
+
+    /**
+     * <p>
+     * Current entry, null if the scenario is over (Текущая запись, null, если сценарий закончен)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    AbstractFrame peek();
+
+    /**
+     * <p>
+     * Go to the next entry (Перейти к следующей записи)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    void advance();
+
+    /**
+     * <p>
+     * The scenario is over (Сценарий закончен)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    default boolean isOver() {
+        return peek() == null;
+    }
+
+    /**
+     * <p>
+     * The current entry or the end is known, always true for a scenario that is not a flow
+     * (Текущая запись или конец известны, всегда true для сценария, который не поток)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * <p>
+     * Run the callback once the cursor is ready, on the thread that made it ready
+     * (Выполнить callback, когда курсор будет готов, в потоке, который сделал его готовым)
+     * </p>
+     *
+     * @param callback - called once (вызывается один раз)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    default void onReady(Runnable callback) {
+        callback.run();
+    }
+
+    @Override
+    void close();
+}
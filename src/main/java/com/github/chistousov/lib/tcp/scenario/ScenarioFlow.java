@@ -0,0 +1,162 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.util.ArrayDeque;
+
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.util.concurrent.Queues;
+
+/**
+ * <p>
+ * Scenario taken from a publisher of frames (Сценарий, получаемый от издателя фреймов)
+ * </p>
+ * <p>
+ * Every cursor subscribes to the publisher on its own, so a cold publisher
+ * gives every session the scenario from the start. Frames are requested as
+ * they are passed, at most {@link Queues#SMALL_BUFFER_SIZE} are held, so a
+ * generated flow may be unbounded. A frame that has not arrived yet is not
+ * waited for: the cursor is not ready and calls back once it is.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ScenarioFlow extends BaseSubscriber<AbstractFrame> implements ScenarioCursor {
+
+    private static final int HIGH_WATERMARK = Queues.SMALL_BUFFER_SIZE;
+    private static final int LOW_WATERMARK = HIGH_WATERMARK / 4;
+
+    // guarded by this (publisher thread and event loop)
+    private final ArrayDeque<AbstractFrame> queue = new ArrayDeque<>(HIGH_WATERMARK);
+
+    // requested from the publisher, not yet received
+    private long outstanding;
+
+    private boolean done;
+    private Throwable error;
+
+    // called once the next frame or the end arrives (вызывается, когда придет следующий фрейм или конец)
+    private Runnable readyCallback;
+
+    /**
+     * <p>
+     * Subscribe to a publisher of frames (Подписаться на издателя фреймов)
+     * </p>
+     *
+     * @param frames - frames built with SendFrameBuilder and ReceiveFrameBuilder (фреймы, построенные SendFrameBuilder и ReceiveFrameBuilder)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ScenarioFlow(Publisher<AbstractFrame> frames) {
+        frames.subscribe(this);
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        synchronized (this) {
+            this.outstanding = HIGH_WATERMARK;
+        }
+        subscription.request(HIGH_WATERMARK);
+    }
+
+    @Override
+    protected void hookOnNext(AbstractFrame frame) {
+        synchronized (this) {
+            this.outstanding--;
+            this.queue.offer(frame);
+        }
+        signalReady();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        synchronized (this) {
+            this.done = true;
+        }
+        signalReady();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        synchronized (this) {
+            this.done = true;
+            this.error = throwable;
+        }
+        signalReady();
+    }
+
+    @Override
+    public synchronized AbstractFrame peek() {
+        AbstractFrame frame = this.queue.peek();
+        if (frame == null && this.error != null) {
+            CreateFrameException exception = new CreateFrameException("Scenario flow failed");
+            exception.initCause(this.error);
+            throw exception;
+        }
+        return frame;
+    }
+
+    @Override
+    public void advance() {
+        long request = 0;
+
+        synchronized (this) {
+            this.queue.poll();
+
+            int depth = this.queue.size();
+            if (!this.done && depth + this.outstanding <= LOW_WATERMARK) {
+                request = HIGH_WATERMARK - depth - this.outstanding;
+                this.outstanding += request;
+            }
+        }
+
+        if (request > 0) {
+            request(request);
+        }
+    }
+
+    @Override
+    public synchronized boolean isReady() {
+        return !this.queue.isEmpty() || this.done;
+    }
+
+    @Override
+    public synchronized boolean isOver() {
+        return this.queue.isEmpty() && this.done && this.error == null;
+    }
+
+    @Override
+    public void onReady(Runnable callback) {
+        synchronized (this) {
+            this.readyCallback = callback;
+        }
+        signalReady();
+    }
+
+    @Override
+    public void close() {
+        dispose();
+        synchronized (this) {
+            this.queue.clear();
+            this.done = true;
+            this.readyCallback = null;
+        }
+    }
+
+    private void signalReady() {
+        Runnable callback;
+        synchronized (this) {
+            if (this.readyCallback == null || (this.queue.isEmpty() && !this.done)) {
+                return;
+            }
+            callback = this.readyCallback;
+            this.readyCallback = null;
+        }
+        callback.run();
+    }
+}
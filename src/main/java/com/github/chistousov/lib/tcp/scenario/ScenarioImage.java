@@ -0,0 +1,222 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.ReceiveFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+/**
+ * <p>
+ * Compiled scenario mapped into memory (Скомпилированный сценарий, отображенный в память)
+ * </p>
+ * <p>
+ * The image is written by {@link ScenarioCompiler}. Its header is checked
+ * when it is opened, an entry when a cursor reaches it, so opening does not
+ * touch the pages of the entries. Every session replays it through its own
+ * cursor over the same mapping, entries are read in place and their text is
+ * never parsed or encoded again.
+ * </p>
+ * <p>
+ * Layout, big-endian: magic "LIS1", version, length and name of the charset,
+ * then entries: type (1 send, 2 receive), crushing type or NAK flag (ordinal),
+ * errors, text length, text, number of frames and for every frame its text
+ * length (int) and text checksum (byte).
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ScenarioImage {
+
+    static final int MAGIC = 0x4C495331;
+    static final byte VERSION = 1;
+
+    static final byte SEND = 1;
+    static final byte RECEIVE = 2;
+
+    private static final CrushingType[] CRUSHING_TYPES = CrushingType.values();
+    private static final NAKStartCommunication[] NAK_START_COMMUNICATIONS = NAKStartCommunication.values();
+
+    private final Path path;
+
+    // read-only, positions are never moved (только для чтения, позиции не сдвигаются)
+    private final ByteBuffer image;
+
+    private final Charset charset;
+
+    // first entry (первая запись)
+    private final int entriesOffset;
+
+    private ScenarioImage(Path path, ByteBuffer image) {
+        this.path = path;
+        this.image = image;
+
+        try {
+            if (image.getInt(0) != MAGIC || image.get(4) != VERSION) {
+                throw error();
+            }
+            byte[] charsetName = new byte[image.get(5) & 0xFF];
+            ByteBuffer header = image.duplicate();
+            header.position(6);
+            header.get(charsetName);
+            this.charset = Charset.forName(new String(charsetName, StandardCharsets.US_ASCII));
+            this.entriesOffset = header.position();
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException ex) {
+            throw error();
+        }
+    }
+
+    /**
+     * <p>
+     * Map a compiled scenario into memory (Отобразить скомпилированный сценарий в память)
+     * </p>
+     *
+     * @param path - file of the image (файл образа)
+     * @throws IOException if the file cannot be mapped (если файл не отображается)
+     * @throws CreateFrameException if the file is not an image of a scenario (если файл не образ сценария)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static ScenarioImage open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new CreateFrameException(String.format("Scenario image %s is too large",
+                        path.toAbsolutePath().toString()));
+            }
+            // the mapping stays valid after the channel is closed
+            return new ScenarioImage(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * <p>
+     * Charset the text of the scenario was encoded with (Кодировка, которой закодирован текст сценария)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * <p>
+     * New cursor at the start of the scenario (Новый курсор в начале сценария)
+     * </p>
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ScenarioCursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+     * type, flag, errors, text length, text, number of frames, frames
+     */
+    private int entryEnd(int offset) {
+        try {
+            return checkedEntryEnd(offset);
+        } catch (IndexOutOfBoundsException ex) {
+            throw error();
+        }
+    }
+
+    private int checkedEntryEnd(int offset) {
+        byte type = this.image.get(offset);
+        byte flag = this.image.get(offset + 1);
+        int textLength = this.image.getInt(offset + 3);
+        if ((type != SEND && type != RECEIVE) || textLength <= 0 || flag < 0
+                || flag >= (type == SEND ? CRUSHING_TYPES.length : NAK_START_COMMUNICATIONS.length)) {
+            throw error();
+        }
+
+        int framesOffset = offset + 7 + textLength;
+        int frameCount = this.image.getInt(framesOffset);
+        if (frameCount < 0 || (type == SEND) != (frameCount > 0)) {
+            throw error();
+        }
+
+        int end = framesOffset + 4 + frameCount * CompiledMessage.FRAME_ENTRY_SIZE;
+        if (end > this.image.limit() || end < offset) {
+            throw error();
+        }
+        return end;
+    }
+
+    private AbstractFrame entry(int offset) {
+        byte type = this.image.get(offset);
+        byte flag = this.image.get(offset + 1);
+        byte errors = this.image.get(offset + 2);
+        int textLength = this.image.getInt(offset + 3);
+        int framesOffset = offset + 7 + textLength;
+
+        CompiledMessage message = new CompiledMessage(this.image, this.charset, offset + 7, textLength,
+                framesOffset + 4, this.image.getInt(framesOffset));
+
+        if (type == SEND) {
+            return SendFrameBuilder
+                    .builder(message)
+                    .setErrors(errors)
+                    .setCrushingType(CRUSHING_TYPES[flag])
+                    .build();
+        }
+        return ReceiveFrameBuilder
+                .builder(message)
+                .setErrors(errors)
+                .setNakStartCommunication(NAK_START_COMMUNICATIONS[flag])
+                .build();
+    }
+
+    private CreateFrameException error() {
+        return new CreateFrameException(String.format("Scenario image %s is damaged or of another version",
+                this.path.toAbsolutePath().toString()));
+    }
+
+    /*
+     * Position of one session in the image (Позиция одной сессии в образе)
+     */
+    private final class Cursor implements ScenarioCursor {
+
+        private int offset = ScenarioImage.this.entriesOffset;
+
+        private AbstractFrame current;
+        // end of the current entry, checked when it is read (конец текущей записи, проверяется при чтении)
+        private int currentEnd;
+
+        @Override
+        public AbstractFrame peek() {
+            if (this.current == null && this.offset < ScenarioImage.this.image.limit()) {
+                this.currentEnd = entryEnd(this.offset);
+                this.current = entry(this.offset);
+            }
+            return this.current;
+        }
+
+        @Override
+        public void advance() {
+            if (peek() != null) {
+                this.offset = this.currentEnd;
+            }
+            this.current = null;
+        }
+
+        @Override
+        public void close() {
+            this.offset = ScenarioImage.this.image.limit();
+            this.current = null;
+        }
+    }
+}
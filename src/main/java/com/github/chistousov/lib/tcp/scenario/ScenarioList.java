@@ -0,0 +1,55 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.util.List;
+
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+
+/**
+ * <p>
+ * Scenario held in memory as a list of frames (Сценарий, хранимый в памяти списком фреймов)
+ * </p>
+ * <p>
+ * The list is shared by the sessions and must not change while the server
+ * runs, every cursor only keeps its index.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ScenarioList implements ScenarioCursor {
+
+    private final List<AbstractFrame> frames;
+
+    private int index;
+
+    /**
+     * <p>
+     * Cursor at the start of the list (Курсор в начале списка)
+     * </p>
+     *
+     * @param frames - frames built with SendFrameBuilder and ReceiveFrameBuilder (фреймы, построенные SendFrameBuilder и ReceiveFrameBuilder)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public ScenarioList(List<AbstractFrame> frames) {
+        this.frames = frames;
+    }
+
+    @Override
+    public AbstractFrame peek() {
+        return this.index < this.frames.size() ? this.frames.get(this.index) : null;
+    }
+
+    @Override
+    public void advance() {
+        if (this.index < this.frames.size()) {
+            this.index++;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.index = this.frames.size();
+    }
+}
@@ -0,0 +1,434 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+/**
+ * <p>
+ * Scenario read from a file entry by entry (Сценарий, читаемый из файла запись за записью).
+ * </p>
+ * <p>
+ * Only the current entry is held in memory, so the size of a scenario is
+ * not limited by the heap. An entry is a header line
+ * {@code @send|@receive fully|parts|withNAK|withoutNAK witherror N|withouterror HEX}
+ * followed by the lines of the message, every line ends with the bytes HEX
+ * (for example 0D). The crushing and NAK flags stay as set by the last header
+ * that had them.
+ * </p>
+ * <p>
+ * A scenario starting with the line {@code @template} may hold placeholders,
+ * filled in every time the entry is taken: {@code ${seq}} or {@code ${seq:N}}
+ * counts the messages with placeholders taken by the session (zero-padded to N
+ * digits), {@code ${random:N}} N random digits and {@code ${now}} the local time
+ * as yyyyMMddHHmmss, {@code $${} is a literal {@code ${}. Such a message is encoded
+ * once and expanded into reused buffers, not into strings. Entries between
+ * {@code @repeat N} and {@code @end} are taken N times, without N endlessly.
+ * Without {@code @template} messages are taken as written.
+ * </p>
+ * <p>
+ * In a scenario starting with the line {@code @comments} lines starting with
+ * {@code #} are comments, otherwise they are lines of the message.
+ * </p>
+ *
+ * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+ * @since 8
+ */
+public final class ScenarioReader implements ScenarioCursor {
+
+    private static final String SEND = "@send";
+    private static final String RECEIVE = "@receive";
+    private static final String REPEAT = "@repeat";
+    private static final String END = "@end";
+    private static final String TEMPLATE = "@template";
+    private static final String COMMENTS = "@comments";
+
+    private final Path scenario;
+    private final Charset charset;
+    private final BufferedReader reader;
+
+    private int lineNumber;
+
+    // header of the next entry, read while looking for the end of the current one
+    private String nextHeader;
+    private boolean endOfFile;
+
+    private AbstractFrame current;
+
+    // directives at the start of the file are read (директивы в начале файла прочитаны)
+    private boolean started;
+    // placeholders and @repeat are enabled by @template (подстановки и @repeat включены @template)
+    private boolean template;
+    // lines starting with # are skipped, enabled by @comments (строки с # пропускаются, включается @comments)
+    private boolean comments;
+
+    // placeholders of this reader (подстановки этого читателя)
+    private final ScenarioTemplate.Expander expander = new ScenarioTemplate.Expander();
+
+    // @repeat block being taken, otherwise null (повторяемый блок, иначе null)
+    private List<ScenarioTemplate> block;
+    private int blockIndex;
+    private long blockRounds;
+    // 0 - endlessly
+    private long blockRepeats;
+
+    // a compiled scenario must be finite (скомпилированный сценарий должен быть конечным)
+    private boolean finite;
+    // every entry is read once, @repeat blocks are not repeated (каждая запись читается один раз, блоки @repeat не повторяются)
+    private boolean validating;
+
+    // flags of the last header (флаги последнего заголовка)
+    private String typeFrame;
+    private CrushingType crushingType;
+    private NAKStartCommunication nakStartCommunication;
+    private byte errors;
+    private String endLine;
+
+    private ScenarioReader(Path scenario, Charset charset) throws IOException {
+        this.scenario = scenario;
+        this.charset = charset;
+        this.reader = Files.newBufferedReader(scenario, charset);
+    }
+
+    /**
+     * <p>
+     * Open a scenario (Открыть сценарий)
+     * </p>
+     *
+     * @param scenario - file of the scenario (файл сценария)
+     * @param charset - charset of the file (кодировка файла)
+     * @throws IOException if the file cannot be opened (если файл не открывается)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static ScenarioReader open(Path scenario, Charset charset) throws IOException {
+        return new ScenarioReader(scenario, charset);
+    }
+
+    @Override
+    public AbstractFrame peek() {
+        if (this.current == null && !this.endOfFile) {
+            this.current = readEntry();
+        }
+        return this.current;
+    }
+
+    @Override
+    public void advance() {
+        peek();
+        this.current = null;
+    }
+
+    @Override
+    public void close() {
+        this.endOfFile = true;
+        try {
+            this.reader.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * <p>
+     * Check the syntax of the whole scenario, entries are not kept and
+     * {@code @repeat} blocks are read once (Проверить синтаксис всего
+     * сценария, записи не сохраняются, блоки {@code @repeat} читаются один раз)
+     * </p>
+     *
+     * @param scenario - file of the scenario (файл сценария)
+     * @param charset - charset of the file (кодировка файла)
+     * @throws IOException if the file cannot be opened (если файл не открывается)
+     * @throws CreateFrameException with the line of the first error (со строкой первой ошибки)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static void validate(Path scenario, Charset charset) throws IOException {
+        try (ScenarioReader reader = new ScenarioReader(scenario, charset)) {
+            reader.validating = true;
+            while (reader.peek() != null) {
+                reader.advance();
+            }
+        }
+    }
+
+    /*
+     * Reader of a scenario to be compiled, an endless @repeat is an error
+     * (Читатель сценария для компиляции, бесконечный @repeat - ошибка)
+     */
+    static ScenarioReader openFinite(Path scenario, Charset charset) throws IOException {
+        ScenarioReader reader = new ScenarioReader(scenario, charset);
+        reader.finite = true;
+        return reader;
+    }
+
+    private AbstractFrame readEntry() {
+        if (!this.started) {
+            readDirectives();
+        }
+
+        while (true) {
+            if (this.block != null) {
+                if (this.blockIndex < this.block.size()) {
+                    return this.block.get(this.blockIndex++).expand(this.expander);
+                }
+
+                this.blockIndex = 0;
+                if (this.blockRepeats > 0 && ++this.blockRounds >= this.blockRepeats) {
+                    this.block = null;
+                }
+                continue;
+            }
+
+            String header = readHeader();
+            if (header == null) {
+                close();
+                return null;
+            }
+
+            if (this.template && isWord(header, REPEAT)) {
+                readBlock(header);
+            } else if (isWord(header, END) && this.template || isDirective(header)) {
+                throw error();
+            } else {
+                ScenarioTemplate template = readTemplate(header);
+                // a header without lines or of an unknown type is skipped
+                if (template != null) {
+                    return template.expand(this.expander);
+                }
+            }
+        }
+    }
+
+    /*
+     * @repeat [N], entries, @end
+     */
+    private void readBlock(String header) {
+        long repeats = 0;
+        if (header.length() > REPEAT.length()) {
+            try {
+                repeats = Long.parseLong(header.substring(REPEAT.length() + 1));
+            } catch (NumberFormatException ex) {
+                throw error();
+            }
+            if (repeats <= 0) {
+                throw error();
+            }
+        } else if (this.finite) {
+            throw error();
+        }
+
+        List<ScenarioTemplate> templates = new ArrayList<>();
+        String entry;
+        while (!isWord(entry = readHeader(), END)) {
+            if (entry == null || isWord(entry, REPEAT) || isDirective(entry)) {
+                throw error();
+            }
+            ScenarioTemplate template = readTemplate(entry);
+            if (template != null) {
+                templates.add(template);
+            }
+        }
+
+        if (!templates.isEmpty() && !this.validating) {
+            this.block = templates;
+            this.blockIndex = 0;
+            this.blockRounds = 0;
+            this.blockRepeats = repeats;
+        }
+    }
+
+    /*
+     * Directive lines before the first entry (Строки директив перед первой записью)
+     */
+    private void readDirectives() {
+        this.started = true;
+
+        String line;
+        while (isDirective(line = readLine())) {
+            if (TEMPLATE.equals(line)) {
+                this.template = true;
+            } else {
+                this.comments = true;
+            }
+        }
+        if (line != null && !isHeader(line)) {
+            throw error();
+        }
+        this.nextHeader = line;
+    }
+
+    /*
+     * Next header, null at the end of the file (Следующий заголовок, null в конце файла)
+     */
+    private String readHeader() {
+        String header = this.nextHeader;
+        this.nextHeader = null;
+
+        if (header == null) {
+            header = readLine();
+            if (header != null && !isHeader(header)) {
+                throw error();
+            }
+        }
+        return header;
+    }
+
+    /*
+     * Header and the lines of its message, null if there are no lines or the type is unknown
+     * (Заголовок и строки его сообщения, null, если строк нет или тип неизвестен)
+     */
+    private ScenarioTemplate readTemplate(String header) {
+        int headerLine = this.lineNumber;
+        parseHeader(header);
+
+        StringBuilder message = null;
+        String line;
+        while ((line = readLine()) != null && !isHeader(line)) {
+            if (message == null) {
+                message = new StringBuilder();
+            }
+            message.append(line).append(this.endLine);
+        }
+        this.nextHeader = line;
+
+        if (message == null || !(SEND.equals(this.typeFrame) || RECEIVE.equals(this.typeFrame))) {
+            return null;
+        }
+
+        try {
+            return ScenarioTemplate.of(SEND.equals(this.typeFrame),
+                    this.crushingType == CrushingType.FULLY ? CrushingType.FULLY : CrushingType.PARTS,
+                    this.nakStartCommunication == NAKStartCommunication.WITH_NAK
+                            ? NAKStartCommunication.WITH_NAK
+                            : NAKStartCommunication.WITHOUT_NAK,
+                    this.errors, message.toString(), this.charset, this.template);
+        } catch (IllegalArgumentException ex) {
+            throw error(headerLine);
+        }
+    }
+
+    /*
+     * @type flag witherror N HEX or @type flag withouterror HEX, words are split by one space
+     */
+    private void parseHeader(String header) {
+        int start = 0;
+        int end = wordEnd(header, start);
+        this.typeFrame = header.substring(start, end);
+
+        start = end + 1;
+        end = wordEnd(header, start);
+        String flag = word(header, start, end);
+        if ("fully".equals(flag)) {
+            this.crushingType = CrushingType.FULLY;
+        } else if ("parts".equals(flag)) {
+            this.crushingType = CrushingType.PARTS;
+        } else {
+            this.nakStartCommunication = "withNAK".equals(flag)
+                    ? NAKStartCommunication.WITH_NAK
+                    : NAKStartCommunication.WITHOUT_NAK;
+        }
+
+        start = end + 1;
+        end = wordEnd(header, start);
+        if ("witherror".equals(word(header, start, end))) {
+            start = end + 1;
+            end = wordEnd(header, start);
+            try {
+                this.errors = Byte.parseByte(word(header, start, end));
+            } catch (NumberFormatException ex) {
+                throw error();
+            }
+        } else {
+            this.errors = (byte) -1;
+        }
+
+        start = end + 1;
+        end = wordEnd(header, start);
+        this.endLine = hex(header, start, end);
+    }
+
+    private String hex(String header, int start, int end) {
+        if (start >= end || (end - start) % 2 != 0) {
+            throw error();
+        }
+
+        byte[] bytes = new byte[(end - start) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(header.charAt(start + i * 2), 16);
+            int low = Character.digit(header.charAt(start + i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw error();
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return new String(bytes, this.charset);
+    }
+
+    private String word(String header, int start, int end) {
+        if (start >= end) {
+            throw error();
+        }
+        return header.substring(start, end);
+    }
+
+    private static int wordEnd(String header, int start) {
+        if (start > header.length()) {
+            return start;
+        }
+        int end = header.indexOf(' ', start);
+        return end < 0 ? header.length() : end;
+    }
+
+    private static boolean isWord(String line, String word) {
+        return line != null && line.startsWith(word)
+                && (line.length() == word.length() || line.charAt(word.length()) == ' ');
+    }
+
+    private static boolean isDirective(String line) {
+        return TEMPLATE.equals(line) || COMMENTS.equals(line);
+    }
+
+    private boolean isComment(String line) {
+        return this.comments && !line.isEmpty() && line.charAt(0) == '#';
+    }
+
+    private static boolean isHeader(String line) {
+        return !line.isEmpty() && line.charAt(0) == '@';
+    }
+
+    private String readLine() {
+        try {
+            String line;
+            do {
+                line = this.reader.readLine();
+                if (line != null) {
+                    this.lineNumber++;
+                }
+            } while (line != null && isComment(line));
+            return line;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private CreateFrameException error() {
+        return error(this.lineNumber);
+    }
+
+    private CreateFrameException error(int line) {
+        return new CreateFrameException(String.format("Error in line %d scenario %s", line,
+                this.scenario.toAbsolutePath().toString()));
+    }
+}
@@ -0,0 +1,310 @@
+package com.github.chistousov.lib.tcp.scenario;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.chistousov.lib.tcp.ChecksumASTM1381;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.ReceiveFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+/*
+ * Entry of a scenario with placeholders (Запись сценария с подстановками)
+ *
+ * The text is encoded once into literal parts, placeholders are written
+ * between them as digits when the entry is expanded: ${seq} and ${seq:N}
+ * count the expanded messages of the session (zero-padded to N),
+ * ${random:N} N random digits, ${now} local time yyyyMMddHHmmss, $${ is a
+ * literal ${. An entry without placeholders, or of a scenario without
+ * @template, is built once and returned as is.
+ */
+final class ScenarioTemplate {
+
+    private static final byte SEQ = 0;
+    private static final byte RANDOM = 1;
+    private static final byte NOW = 2;
+
+    // digits of a long
+    private static final int MAX_SEQ_DIGITS = 19;
+    private static final int NOW_DIGITS = 14;
+
+    // the entry without placeholders, otherwise null
+    private final AbstractFrame literal;
+
+    private final boolean send;
+    private final CrushingType crushingType;
+    private final NAKStartCommunication nakStartCommunication;
+    private final byte errors;
+    private final Charset charset;
+
+    // literal parts, one more than placeholders (части текста, на одну больше подстановок)
+    private final byte[][] parts;
+    private final byte[] kinds;
+    private final int[] widths;
+
+    // text length with the widest placeholders
+    private final int maxLength;
+
+    private ScenarioTemplate(AbstractFrame literal, boolean send, CrushingType crushingType,
+            NAKStartCommunication nakStartCommunication, byte errors, Charset charset, byte[][] parts, byte[] kinds,
+            int[] widths) {
+        this.literal = literal;
+        this.send = send;
+        this.crushingType = crushingType;
+        this.nakStartCommunication = nakStartCommunication;
+        this.errors = errors;
+        this.charset = charset;
+        this.parts = parts;
+        this.kinds = kinds;
+        this.widths = widths;
+
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            length += kinds[i] == SEQ ? Math.max(widths[i], MAX_SEQ_DIGITS) : widths[i];
+        }
+        this.maxLength = length;
+    }
+
+    /*
+     * Entry of the scenario, the message ends with the end of line already,
+     * its text is taken literally unless placeholders are enabled
+     * (Запись сценария, сообщение уже заканчивается концом строки, его текст
+     * берется как есть, если подстановки не включены)
+     *
+     * IllegalArgumentException if a placeholder is unknown
+     */
+    static ScenarioTemplate of(boolean send, CrushingType crushingType, NAKStartCommunication nakStartCommunication,
+            byte errors, String message, Charset charset, boolean placeholders) {
+
+        if (!placeholders || message.indexOf("${") < 0) {
+            return literal(send, crushingType, nakStartCommunication, errors, message, charset);
+        }
+
+        // digits are written as ASCII
+        if (!Arrays.equals("0123456789".getBytes(charset), "0123456789".getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("Placeholders need an ASCII compatible charset");
+        }
+
+        List<byte[]> parts = new ArrayList<>();
+        byte[] kinds = new byte[message.length() / 3];
+        int[] widths = new int[kinds.length];
+        int count = 0;
+
+        StringBuilder part = new StringBuilder();
+        int start = 0;
+        for (int open = message.indexOf("${"); open >= 0; open = message.indexOf("${", start)) {
+            if (open > start && message.charAt(open - 1) == '$') {
+                // $${ is a literal ${
+                part.append(message, start, open);
+                start = open + 1;
+                continue;
+            }
+
+            int close = message.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Placeholder is not closed");
+            }
+
+            parts.add(part.append(message, start, open).toString().getBytes(charset));
+            part.setLength(0);
+            placeholder(message, open + 2, close, kinds, widths, count++);
+            start = close + 1;
+        }
+        part.append(message, start, message.length());
+
+        if (count == 0) {
+            return literal(send, crushingType, nakStartCommunication, errors, part.toString(), charset);
+        }
+        parts.add(part.toString().getBytes(charset));
+
+        return new ScenarioTemplate(null, send, crushingType, nakStartCommunication, errors, charset,
+                parts.toArray(new byte[0][]), Arrays.copyOf(kinds, count),
+                Arrays.copyOf(widths, count));
+    }
+
+    private static ScenarioTemplate literal(boolean send, CrushingType crushingType,
+            NAKStartCommunication nakStartCommunication, byte errors, String message, Charset charset) {
+        AbstractFrame literal = send
+                ? SendFrameBuilder.builder(message).setErrors(errors).setCrushingType(crushingType).build()
+                : ReceiveFrameBuilder.builder(message).setErrors(errors)
+                        .setNakStartCommunication(nakStartCommunication).build();
+        return new ScenarioTemplate(literal, send, crushingType, nakStartCommunication, errors, charset,
+                new byte[0][], new byte[0], new int[0]);
+    }
+
+    private static void placeholder(String message, int from, int to, byte[] kinds, int[] widths, int index) {
+        int colon = message.indexOf(':', from);
+        String name = message.substring(from, colon < 0 || colon > to ? to : colon);
+        int width = 0;
+        if (colon >= 0 && colon < to) {
+            try {
+                width = Integer.parseInt(message.substring(colon + 1, to));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Width of a placeholder is not a number");
+            }
+            if (width <= 0 || width > 64) {
+                throw new IllegalArgumentException("Width of a placeholder should be 1-64");
+            }
+        }
+
+        if ("seq".equals(name)) {
+            kinds[index] = SEQ;
+        } else if ("random".equals(name) && width > 0) {
+            kinds[index] = RANDOM;
+        } else if ("now".equals(name) && width == 0) {
+            kinds[index] = NOW;
+            width = NOW_DIGITS;
+        } else {
+            throw new IllegalArgumentException("Unknown placeholder " + message.substring(from - 2, to + 1));
+        }
+        widths[index] = width;
+    }
+
+    /*
+     * The entry with its placeholders filled in by the state of the session
+     * (Запись с подстановками, заполненными по состоянию сессии)
+     */
+    AbstractFrame expand(Expander expander) {
+        if (this.literal != null) {
+            return this.literal;
+        }
+
+        CompiledMessage message = expander.expand(this);
+
+        if (this.send) {
+            return SendFrameBuilder
+                    .builder(message)
+                    .setErrors(this.errors)
+                    .setCrushingType(this.crushingType)
+                    .build();
+        }
+        return ReceiveFrameBuilder
+                .builder(message)
+                .setErrors(this.errors)
+                .setNakStartCommunication(this.nakStartCommunication)
+                .build();
+    }
+
+    /*
+     * Placeholder state of one session, its buffers are reused
+     * (Состояние подстановок одной сессии, его буферы переиспользуются)
+     *
+     * Two buffers take turns: a message is expanded over the one before the
+     * previous, by then the session has replaced it as its current message.
+     */
+    static final class Expander {
+
+        private final ByteBuffer[] buffers = new ByteBuffer[2];
+        private int turn;
+
+        private long sequence;
+
+        // ${now} of the last second (${now} последней секунды)
+        private final byte[] now = new byte[NOW_DIGITS];
+        private long nowSecond = -1;
+
+        private CompiledMessage expand(ScenarioTemplate template) {
+            long sequence = ++this.sequence;
+
+            int maxTextLength = template.send ? template.crushingType.getMaxTextLength(template.maxLength) : 1;
+            int frameCapacity = template.send
+                    ? (template.maxLength / maxTextLength + 1) * CompiledMessage.FRAME_ENTRY_SIZE
+                    : 0;
+            ByteBuffer buffer = buffer(template.maxLength + frameCapacity);
+
+            for (int i = 0; i < template.kinds.length; i++) {
+                buffer.put(template.parts[i]);
+                switch (template.kinds[i]) {
+                    case SEQ:
+                        putNumber(buffer, sequence, template.widths[i]);
+                        break;
+                    case RANDOM:
+                        for (int digit = 0; digit < template.widths[i]; digit++) {
+                            buffer.put((byte) ('0' + ThreadLocalRandom.current().nextInt(10)));
+                        }
+                        break;
+                    default:
+                        buffer.put(now());
+                        break;
+                }
+            }
+            buffer.put(template.parts[template.kinds.length]);
+
+            int textLength = buffer.position();
+            int frameCount = 0;
+
+            if (template.send) {
+                int frameLength = template.crushingType.getMaxTextLength(textLength);
+                for (int offset = 0; offset < textLength; offset += frameLength, frameCount++) {
+                    int length = Math.min(frameLength, textLength - offset);
+                    buffer.putInt(length);
+                    buffer.put((byte) ChecksumASTM1381.calculate(buffer.array(), offset, offset + length));
+                }
+            }
+
+            return new CompiledMessage(buffer, template.charset, 0, textLength, textLength, frameCount);
+        }
+
+        private ByteBuffer buffer(int capacity) {
+            this.turn ^= 1;
+            ByteBuffer buffer = this.buffers[this.turn];
+            if (buffer == null || buffer.capacity() < capacity) {
+                buffer = ByteBuffer.allocate(Math.max(capacity, buffer == null ? 256 : buffer.capacity() * 2));
+                this.buffers[this.turn] = buffer;
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        private byte[] now() {
+            long second = System.currentTimeMillis() / 1000;
+            if (second != this.nowSecond) {
+                this.nowSecond = second;
+
+                LocalDateTime time = LocalDateTime.now();
+                putDigits(this.now, 0, time.getYear(), 4);
+                putDigits(this.now, 4, time.getMonthValue(), 2);
+                putDigits(this.now, 6, time.getDayOfMonth(), 2);
+                putDigits(this.now, 8, time.getHour(), 2);
+                putDigits(this.now, 10, time.getMinute(), 2);
+                putDigits(this.now, 12, time.getSecond(), 2);
+            }
+            return this.now;
+        }
+
+        private static void putNumber(ByteBuffer buffer, long value, int width) {
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = digits; i < width; i++) {
+                buffer.put((byte) '0');
+            }
+
+            int end = buffer.position() + digits;
+            for (int i = end - 1; i >= end - digits; i--) {
+                buffer.put(i, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+            buffer.position(end);
+        }
+
+        private static void putDigits(byte[] target, int offset, int value, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                target[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+    }
+}
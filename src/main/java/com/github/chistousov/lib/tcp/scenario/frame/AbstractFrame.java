@@ -1,5 +1,6 @@
 package com.github.chistousov.lib.tcp.scenario.frame;
 
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
 import com.github.chistousov.lib.tcp.scenario.CreateFrameException;
 
 /**
@@ -13,6 +14,9 @@ import com.github.chistousov.lib.tcp.scenario.CreateFrameException;
 public abstract class AbstractFrame {
     // message frame
     private String frame;
+
+    // message of a compiled scenario, null for a text scenario (сообщение скомпилированного сценария, null для текстового сценария)
+    private CompiledMessage compiled;
     
     // how many times do you need to emulate the error in the last message? (сколько раз нужно эмулировать ошибку в последнем сообщении?)
     private byte errors;
@@ -36,6 +40,27 @@ public abstract class AbstractFrame {
         this.errors = errors;
     }
 
+    /**
+     * <p>
+     * Frame of a text or of a compiled scenario, the text of a compiled one is decoded only if asked for (Фрейм текстового или скомпилированного сценария, текст скомпилированного декодируется, только если запрошен)
+     * </p>
+     *
+     * @param frame - message frame, ignored if compiled is not null (игнорируется, если compiled не null)
+     * @param compiled - message of a compiled scenario or null (сообщение скомпилированного сценария или null)
+     * @param errors - how many times do you need to emulate the error in the last message? (сколько раз нужно эмулировать ошибку в последнем сообщении?)
+     * 
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    protected AbstractFrame(String frame, CompiledMessage compiled, byte errors){
+        if(compiled == null && (frame == null || frame.isEmpty())){
+            throw new CreateFrameException("Frame cannot be empty");
+        }
+        this.frame = compiled == null ? frame : null;
+        this.compiled = compiled;
+        this.errors = errors;
+    }
+
 
     /**
      * <p>
@@ -46,9 +71,24 @@ public abstract class AbstractFrame {
      * @since 8
      */
     public String getFrame() {
+        if(frame == null){
+            frame = compiled.decode();
+        }
         return frame;
     }
 
+    /**
+     * <p>
+     * Message of a compiled scenario, null for a text scenario (Сообщение скомпилированного сценария, null для текстового сценария)
+     * </p>
+     * 
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public CompiledMessage getCompiled() {
+        return compiled;
+    }
+
     /**
      * <p>
      * How many times do you need to emulate the error in the last message? (сколько раз нужно эмулировать ошибку в последнем сообщении?)
@@ -63,6 +103,6 @@ public abstract class AbstractFrame {
 
     @Override
     public String toString() {
-        return frame;
+        return getFrame();
     }
 }
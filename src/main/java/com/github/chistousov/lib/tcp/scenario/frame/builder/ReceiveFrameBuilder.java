@@ -1,5 +1,6 @@
 package com.github.chistousov.lib.tcp.scenario.frame.builder;
 
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
 import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
 import com.github.chistousov.lib.tcp.scenario.frame.impl.ReceiveFrame;
 import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
@@ -15,6 +16,9 @@ import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
 public class ReceiveFrameBuilder {
     // message frame
     private String frame;
+
+    // message of a compiled scenario (сообщение скомпилированного сценария)
+    private CompiledMessage compiled;
     
     // how many times do you need to emulate the error in the last message? (сколько раз нужно эмулировать ошибку в последнем сообщении?)
     private byte errors;
@@ -39,6 +43,35 @@ public class ReceiveFrameBuilder {
     private ReceiveFrameBuilder(String frame){
         this.frame = frame;
     }
+
+    /**
+     * <p>
+     * Start of construction of a frame of a compiled scenario (Начало строительства фрейма скомпилированного сценария)
+     * </p>
+     *
+     * @param compiled message of a compiled scenario
+     * @return ReceiveFrameBuilder
+     * 
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static ReceiveFrameBuilder builder(CompiledMessage compiled){
+        ReceiveFrameBuilder builder = new ReceiveFrameBuilder(null);
+        builder.compiled = compiled;
+        return builder;
+    }
+
+    /**
+     * <p>
+     * Message of a compiled scenario, null for a text scenario (Сообщение скомпилированного сценария, null для текстового сценария)
+     * </p>
+     * 
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public CompiledMessage getCompiled() {
+        return compiled;
+    }
     /**
      * <p>
      * Do I need to send a NAK when interacting? (for the test analyzer server) (Нужно ли отправлять NAK при взаимодействии? (для тестового сервер-анализатора))
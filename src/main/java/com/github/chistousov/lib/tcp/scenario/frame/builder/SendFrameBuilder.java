@@ -1,5 +1,6 @@
 package com.github.chistousov.lib.tcp.scenario.frame.builder;
 
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
 import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
 import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
 import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
@@ -15,6 +16,9 @@ import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
 public class SendFrameBuilder {
     // message frame
     private String frame;
+
+    // message of a compiled scenario (сообщение скомпилированного сценария)
+    private CompiledMessage compiled;
     
     // how many times do you need to emulate the error in the last message? (сколько раз нужно эмулировать ошибку в последнем сообщении?)
     private byte errors;
@@ -49,6 +53,35 @@ public class SendFrameBuilder {
         this.frame = frame;
     }
 
+    /**
+     * <p>
+     * Start of construction of a frame of a compiled scenario (Начало строительства фрейма скомпилированного сценария)
+     * </p>
+     *
+     * @param compiled message of a compiled scenario
+     * @return SendFrameBuilder
+     * 
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public static SendFrameBuilder builder(CompiledMessage compiled){
+        SendFrameBuilder builder = new SendFrameBuilder(null);
+        builder.compiled = compiled;
+        return builder;
+    }
+
+    /**
+     * <p>
+     * Message of a compiled scenario, null for a text scenario (Сообщение скомпилированного сценария, null для текстового сценария)
+     * </p>
+     * 
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public CompiledMessage getCompiled() {
+        return compiled;
+    }
+
     /**
      * <p>
      * The message is transmitted in whole or in parts (for a test server-analyzer) (Передается сообщение полностью или частями (для тестового сервер-анализатора))
@@ -27,7 +27,7 @@ public class ReceiveFrame extends AbstractFrame {
      * @since 8
      */
     public ReceiveFrame(ReceiveFrameBuilder receiveFrameBuilder){
-        super(receiveFrameBuilder.getFrame(), receiveFrameBuilder.getErrors());
+        super(receiveFrameBuilder.getFrame(), receiveFrameBuilder.getCompiled(), receiveFrameBuilder.getErrors());
         
         this.nakStartCommunication = receiveFrameBuilder.getNakStartCommunication();
     }
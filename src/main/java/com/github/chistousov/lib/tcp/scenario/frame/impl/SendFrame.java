@@ -27,7 +27,7 @@ public class SendFrame extends AbstractFrame {
      * @since 8
      */
     public SendFrame(SendFrameBuilder sendFrameBuilder){
-        super(sendFrameBuilder.getFrame(), sendFrameBuilder.getErrors());
+        super(sendFrameBuilder.getFrame(), sendFrameBuilder.getCompiled(), sendFrameBuilder.getErrors());
         
         this.crushingType = sendFrameBuilder.getCrushingType();
     }
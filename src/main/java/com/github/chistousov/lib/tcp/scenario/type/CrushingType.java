@@ -9,5 +9,22 @@ package com.github.chistousov.lib.tcp.scenario.type;
  * @since 8
  */
 public enum CrushingType {
-    FULLY, PARTS
+    FULLY, PARTS;
+
+    // to simulate sending in parts
+    private static final int MAX_TEXT_LENGTH_OF_PARTS = 50;
+
+    /**
+     * <p>
+     * Maximum text length of a frame for a message of the given length (Максимальная длина текста фрейма для сообщения заданной длины)
+     * </p>
+     *
+     * @param messageLength - length of the message in bytes (длина сообщения в байтах)
+     *
+     * @author Nikita Chistousov (chistousov.nik@yandex.ru)
+     * @since 8
+     */
+    public int getMaxTextLength(int messageLength) {
+        return this == PARTS ? MAX_TEXT_LENGTH_OF_PARTS : Math.max(messageLength, 1);
+    }
 }
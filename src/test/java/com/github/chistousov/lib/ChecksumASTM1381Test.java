@@ -0,0 +1,115 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+import com.github.chistousov.lib.tcp.ChecksumASTM1381;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+class ChecksumASTM1381Test {
+
+    private static Logger log = LoggerFactory.getLogger(ChecksumASTM1381Test.class);
+
+    // FN text ETX
+    private static final byte[] FRAME = "1H|\\!~|||DxH|||||LIS||P|LIS2-A|20211028082630\r\u0003"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private static final int FRAMES = 200_000;
+
+    @Test
+    @DisplayName("Checksum of byte[], ByteBuf and incremental update are equal")
+    void checksum() {
+        // given
+        int expected = 0;
+        for (byte b : FRAME) {
+            expected += b & 0xFF;
+        }
+        expected %= 256;
+
+        ByteBuf byteBuf = Unpooled.wrappedBuffer(FRAME);
+        ChecksumASTM1381 incremental = new ChecksumASTM1381();
+
+        // when
+        for (byte b : FRAME) {
+            incremental.update(b);
+        }
+
+        // then
+        assertEquals(expected, ChecksumASTM1381.calculate(FRAME, 0, FRAME.length));
+        assertEquals(expected, ChecksumASTM1381.calculate(byteBuf, 0, FRAME.length));
+        assertEquals(expected, new ChecksumASTM1381().update(byteBuf, 0, FRAME.length).value());
+        assertEquals(expected, incremental.value());
+        assertEquals(String.format("%02X", expected),
+                new String(new byte[] { incremental.c1(), incremental.c2() }, StandardCharsets.US_ASCII));
+        assertTrue(incremental.matches(ChecksumASTM1381.c1(expected), ChecksumASTM1381.c2(expected)));
+    }
+
+    @Test
+    @DisplayName("Microbenchmark: no allocations per frame")
+    void allocationFree() {
+        // given
+        // allocated bytes of a thread are measured by HotSpot only
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(isAllocatedMemorySupported(mxBean), "allocated memory of a thread is not measured by this JVM");
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) mxBean;
+        long threadId = Thread.currentThread().getId();
+
+        ByteBuf byteBuf = Unpooled.wrappedBuffer(FRAME);
+        ChecksumASTM1381 checksum = new ChecksumASTM1381();
+
+        // warm up (JIT)
+        long blackhole = run(byteBuf, checksum);
+
+        // when
+        long overheadBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long overheadAfter = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        long startTime = System.nanoTime();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        blackhole += run(byteBuf, checksum);
+        long allocatedAfter = threadMXBean.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime() - startTime;
+
+        long allocated = (allocatedAfter - allocatedBefore) - (overheadAfter - overheadBefore);
+
+        log.info("{} frames x 3 checksums: {} ns/frame, {} bytes allocated ({})",
+                FRAMES, time / FRAMES, allocated, blackhole);
+
+        // then
+        assertEquals(0, allocated, "allocated " + allocated + " bytes for " + FRAMES + " frames");
+    }
+
+    private static boolean isAllocatedMemorySupported(ThreadMXBean mxBean) {
+        try {
+            return mxBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) mxBean).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) mxBean).isThreadAllocatedMemoryEnabled();
+        } catch (NoClassDefFoundError ex) {
+            return false;
+        }
+    }
+
+    private static long run(ByteBuf byteBuf, ChecksumASTM1381 checksum) {
+        long result = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            int value = ChecksumASTM1381.calculate(FRAME, 0, FRAME.length);
+            value += ChecksumASTM1381.calculate(byteBuf, 0, FRAME.length);
+            value += checksum.reset().update(byteBuf, 0, FRAME.length).c1();
+            result += value + ChecksumASTM1381.c2(value);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.chistousov.lib.tcp.CommonCommandASTM1381;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CommonCommandASTM1381Test {
+
+    @Test
+    @DisplayName("Control characters are displayed by name, text is kept")
+    void displayCommandByte() {
+        // given
+        String frame = "\u00021H|\\^&|||Ω\r\u000312\r\n";
+
+        // when
+        String display = CommonCommandASTM1381.displayCommandByte(frame);
+
+        // then
+        assertEquals("<STX>1H|\\^&|||Ω<CR><ETX>12<CR><LF>", display);
+        assertEquals(CommonCommandASTM1381.EOT, CommonCommandASTM1381.getCommonCommandByNumber((byte) 0x04));
+        assertEquals(CommonCommandASTM1381.NULL, CommonCommandASTM1381.getCommonCommandByNumber((byte) 0xC3));
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import com.github.chistousov.lib.tcp.FrameDecoderASTM1381;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+class FrameDecoderASTM1381Test {
+
+    private static final String FRAME_1 = "\u00021H|\\!~|||DxH\r\u00172A\r\n";
+    private static final String FRAME_2 = "\u00022L|1|N\r\u00033B\r\n";
+
+    @Test
+    @DisplayName("Coalesced command and frames are split")
+    void coalesced() {
+        // given
+        EmbeddedChannel channel = new EmbeddedChannel(new FrameDecoderASTM1381(64_000));
+
+        // when
+        channel.writeInbound(buffer("\u0006" + FRAME_1 + FRAME_2 + "\u0004"));
+
+        // then
+        assertEquals("\u0006", readInbound(channel));
+        assertEquals(FRAME_1, readInbound(channel));
+        assertEquals(FRAME_2, readInbound(channel));
+        assertEquals("\u0004", readInbound(channel));
+        assertNull(channel.readInbound());
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("Frame split between reads is held back until LF")
+    void fragmented() {
+        // given
+        EmbeddedChannel channel = new EmbeddedChannel(new FrameDecoderASTM1381(64_000));
+
+        // when
+        channel.writeInbound(buffer(FRAME_1.substring(0, 5)));
+        Object nothing = channel.readInbound();
+        channel.writeInbound(buffer(FRAME_1.substring(5) + "\u0005"));
+
+        // then
+        assertNull(nothing);
+        assertEquals(FRAME_1, readInbound(channel));
+        assertEquals("\u0005", readInbound(channel));
+        assertNull(channel.readInbound());
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("Noise and oversized frames are reported once")
+    void noise() {
+        // given
+        EmbeddedChannel channel = new EmbeddedChannel(new FrameDecoderASTM1381(8));
+
+        // when
+        channel.writeInbound(buffer("abc\u0006\u00021234567890"));
+        channel.writeInbound(buffer("12\r\n" + "\u0004"));
+
+        // then
+        assertEquals("abc", readInbound(channel));
+        assertEquals("\u0006", readInbound(channel));
+        assertEquals("\u00021234567890", readInbound(channel));
+        assertEquals("\u0004", readInbound(channel));
+        assertNull(channel.readInbound());
+
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteBuf buffer(String data) {
+        return Unpooled.copiedBuffer(data, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String readInbound(EmbeddedChannel channel) {
+        ByteBuf byteBuf = channel.readInbound();
+        try {
+            return byteBuf.toString(StandardCharsets.ISO_8859_1);
+        } finally {
+            byteBuf.release();
+        }
+    }
+}
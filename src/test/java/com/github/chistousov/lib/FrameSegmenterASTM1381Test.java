@@ -0,0 +1,73 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.chistousov.lib.tcp.FrameSegmenterASTM1381;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+class FrameSegmenterASTM1381Test {
+
+    private static final byte[] MESSAGE = "H|\\^&\rP|1\rO|1|000004287888\rL|1|N\r"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    @DisplayName("Frames are produced one by one, only the last one ends with ETX")
+    void lazySegments() {
+        // given
+        FrameSegmenterASTM1381 segmenter = new FrameSegmenterASTM1381(MESSAGE, 10, false);
+
+        // when
+        List<String> texts = segment(segmenter);
+
+        // then
+        assertEquals(4, segmenter.getFrames());
+        assertEquals("H|\\^&\rP|1\r", texts.get(0));
+        assertEquals(new String(MESSAGE, StandardCharsets.US_ASCII), String.join("", texts));
+        assertFalse(segmenter.hasNext());
+    }
+
+    @Test
+    @DisplayName("Frames end after a record where possible")
+    void alignedToRecords() {
+        // given
+        FrameSegmenterASTM1381 segmenter = new FrameSegmenterASTM1381(MESSAGE, 12, true);
+
+        // when
+        List<String> texts = segment(segmenter);
+
+        // then
+        assertEquals("H|\\^&\rP|1\r", texts.get(0));
+        // O record is longer than a frame and is split anyway
+        assertEquals("O|1|00000428", texts.get(1));
+        assertEquals("7888\rL|1|N\r", texts.get(2));
+        assertEquals(3, segmenter.getFrames());
+    }
+
+    private static List<String> segment(FrameSegmenterASTM1381 segmenter) {
+        List<String> texts = new ArrayList<>();
+        byte frameNumber = 1;
+        while (segmenter.hasNext()) {
+            ByteBuf frame = segmenter.next(ByteBufAllocator.DEFAULT, false, frameNumber);
+            try {
+                // STX FN text ETB/ETX C1 C2 CR LF
+                byte end = frame.getByte(frame.writerIndex() - 5);
+                assertEquals(segmenter.hasNext() ? 0x17 : 0x03, end);
+                texts.add(frame.toString(2, frame.readableBytes() - 7, StandardCharsets.US_ASCII));
+            } finally {
+                frame.release();
+            }
+            frameNumber = (byte) ((frameNumber + 1) % 8);
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import com.github.chistousov.lib.lis2a.FieldLIS2A;
+import com.github.chistousov.lib.lis2a.MessageLIS2A;
+import com.github.chistousov.lib.lis2a.RecordLIS2A;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MessageLIS2ATest {
+
+    private static final String MESSAGE = "H|\\!~|||DxH\r"
+            + "P|1||401791||Иванов\r"
+            + "R|1|!!!WBC!33256-9|7.4|10*3/uL\\g/L||N\r"
+            + "L|1|N\r";
+
+    @Test
+    @DisplayName("Records, fields, repeats and components are read with the delimiters of the H record")
+    void tokenize() {
+        // given
+        byte[] data = MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+        // when
+        MessageLIS2A message = MessageLIS2A.parse(data);
+        RecordLIS2A result = message.getRecord(2);
+        FieldLIS2A testId = result.getField(3);
+        FieldLIS2A units = result.getField(5);
+
+        // then
+        assertEquals(4, message.getRecordCount());
+        assertEquals('!', message.getDelimiters().getComponent());
+        assertEquals('R', message.getRecordType(2));
+        assertEquals("\\!~", message.getRecord(0).getString(2));
+
+        assertEquals(5, testId.getComponentCount());
+        assertTrue(testId.getComponent(4).contentEquals("WBC"));
+        assertEquals("33256-9", testId.getComponent(5).toString());
+        assertEquals("7.4", result.getString(4));
+        // text that is not ASCII is compared in the charset of the message
+        assertTrue(message.getRecord(1).getField(6).contentEquals("Иванов"));
+        assertFalse(message.getRecord(1).getField(6).contentEquals("Иванова"));
+
+        assertEquals(2, units.getRepeatCount());
+        assertEquals("g/L", units.getRepeat(2).toString());
+
+        assertTrue(result.getField(6).isEmpty());
+        assertEquals("", result.getString(42));
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.chistousov.lib.exceptions.CreateInstanseException;
+import com.github.chistousov.lib.tcp.TCPBuilder;
+import com.github.chistousov.lib.tcp.scenario.ScenarioFlow;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class ScenarioFlowTest {
+
+    private static AbstractFrame frame(long number) {
+        return SendFrameBuilder
+                .builder("H|\\!~|||DxH\rP|" + number + "\rL|1|N\r")
+                .setErrors((byte) -1)
+                .setCrushingType(CrushingType.FULLY)
+                .build();
+    }
+
+    @Test
+    @DisplayName("An unbounded generated scenario is read with bounded demand")
+    void unbounded() {
+        // given
+        AtomicInteger requested = new AtomicInteger();
+        Flux<AbstractFrame> frames = Flux
+                .<AbstractFrame, Long>generate(() -> 0L, (number, sink) -> {
+                    sink.next(frame(number));
+                    return number + 1;
+                })
+                .doOnRequest(n -> requested.addAndGet((int) n));
+
+        // when
+        try (ScenarioFlow cursor = new ScenarioFlow(frames)) {
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals("H|\\!~|||DxH\rP|" + i + "\rL|1|N\r", cursor.peek().getFrame());
+                cursor.advance();
+            }
+
+            // then
+            assertFalse(cursor.isOver());
+            assertTrue(requested.get() <= 10_000 + 256);
+        }
+    }
+
+    @Test
+    @DisplayName("A frame that has not arrived is not waited for")
+    void notReady() {
+        // given
+        Sinks.Many<AbstractFrame> frames = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger ready = new AtomicInteger();
+
+        try (ScenarioFlow cursor = new ScenarioFlow(frames.asFlux())) {
+            // when
+            cursor.onReady(ready::incrementAndGet);
+
+            // then
+            assertFalse(cursor.isReady());
+            assertFalse(cursor.isOver());
+            assertEquals(0, ready.get());
+
+            frames.tryEmitNext(frame(1));
+            assertEquals(1, ready.get());
+            assertTrue(cursor.isReady());
+
+            cursor.advance();
+            frames.tryEmitComplete();
+            assertTrue(cursor.isOver());
+        }
+    }
+
+    @Test
+    @DisplayName("A server with more than one scenario is not built")
+    void oneScenario() {
+        // given
+        TCPBuilder tcpBuilder = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, 5000)
+                .setScenarioFrames(Collections.singletonList(frame(1)))
+                .setScenarioFlow(Flux.just(frame(1)));
+
+        // when
+        // then
+        assertThrows(CreateInstanseException.class, tcpBuilder::build);
+    }
+}
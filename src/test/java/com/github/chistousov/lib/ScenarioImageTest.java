@@ -0,0 +1,101 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import com.github.chistousov.lib.tcp.ChecksumASTM1381;
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
+import com.github.chistousov.lib.tcp.scenario.CreateFrameException;
+import com.github.chistousov.lib.tcp.scenario.ScenarioCompiler;
+import com.github.chistousov.lib.tcp.scenario.ScenarioCursor;
+import com.github.chistousov.lib.tcp.scenario.ScenarioImage;
+import com.github.chistousov.lib.tcp.scenario.ScenarioReader;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScenarioImageTest {
+
+    @Test
+    @DisplayName("A compiled scenario is replayed as the text one, split and summed beforehand")
+    void compile(@TempDir Path tempDir) throws IOException {
+        // given
+        Path scenario = Paths.get("src", "test", "resources", "scenario");
+        Path image = tempDir.resolve("scenario.bin");
+
+        // when
+        int entries = ScenarioCompiler.compile(scenario, StandardCharsets.UTF_8, image);
+
+        // then
+        try (ScenarioReader reader = ScenarioReader.open(scenario, StandardCharsets.UTF_8);
+                ScenarioCursor cursor = ScenarioImage.open(image).cursor()) {
+            int count = 0;
+            for (; !reader.isOver(); reader.advance(), cursor.advance(), count++) {
+                AbstractFrame expected = reader.peek();
+                AbstractFrame actual = cursor.peek();
+                CompiledMessage compiled = actual.getCompiled();
+                byte[] text = expected.getFrame().getBytes(StandardCharsets.UTF_8);
+
+                assertEquals(expected.getClass(), actual.getClass());
+                assertEquals(expected.getErrors(), actual.getErrors());
+                assertArrayEquals(text, compiled.toByteArray());
+                assertEquals(expected.getFrame(), actual.getFrame());
+
+                if (actual instanceof SendFrame) {
+                    assertEquals(((SendFrame) expected).getCrushingType(), ((SendFrame) actual).getCrushingType());
+
+                    int offset = 0;
+                    for (int i = 0; i < compiled.getFrameCount(); i++) {
+                        int length = compiled.getFrameLength(i);
+                        assertEquals(ChecksumASTM1381.calculate(text, offset, offset + length),
+                                compiled.getFrameTextChecksum(i));
+                        offset += length;
+                    }
+                    assertEquals(text.length, offset);
+                }
+            }
+            assertEquals(entries, count);
+            assertTrue(cursor.isOver());
+        }
+    }
+
+    @Test
+    @DisplayName("A file that is not a scenario image is rejected when opened, a damaged entry when reached")
+    void damaged(@TempDir Path tempDir) throws IOException {
+        // given
+        Path image = tempDir.resolve("scenario.bin");
+        Files.write(image, "@send fully withouterror 0D\n".getBytes(StandardCharsets.UTF_8));
+
+        Path truncated = tempDir.resolve("truncated.bin");
+        ScenarioCompiler.compile(Paths.get("src", "test", "resources", "scenario"), StandardCharsets.UTF_8,
+                truncated);
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+
+        // when
+        // then
+        assertThrows(CreateFrameException.class, () -> ScenarioImage.open(image));
+
+        // only the header is checked when opened
+        ScenarioCursor cursor = ScenarioImage.open(truncated).cursor();
+        assertNotNull(cursor.peek());
+        assertThrows(CreateFrameException.class, () -> {
+            while (!cursor.isOver()) {
+                cursor.advance();
+            }
+        });
+    }
+}
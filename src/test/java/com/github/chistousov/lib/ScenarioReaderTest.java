@@ -0,0 +1,181 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.chistousov.lib.exceptions.CreateInstanseException;
+import com.github.chistousov.lib.tcp.ChecksumASTM1381;
+import com.github.chistousov.lib.tcp.TCPBuilder;
+import com.github.chistousov.lib.tcp.scenario.CompiledMessage;
+import com.github.chistousov.lib.tcp.scenario.CreateFrameException;
+import com.github.chistousov.lib.tcp.scenario.ScenarioCompiler;
+import com.github.chistousov.lib.tcp.scenario.ScenarioReader;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.ReceiveFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScenarioReaderTest {
+
+    @Test
+    @DisplayName("Entries are read one by one with the flags of their headers")
+    void read(@TempDir Path tempDir) throws IOException {
+        // given
+        Path scenario = tempDir.resolve("scenario");
+        Files.write(scenario, ("@send fully withouterror 0D\n"
+                + "H|\\!~|||DxH\n"
+                + "L|1|N\n"
+                + "@receive withNAK witherror 2 0D0A\n"
+                + "@receive withNAK witherror 2 0D0A\n"
+                + "H|\\!~|||LIS\n").getBytes(StandardCharsets.UTF_8));
+
+        // when
+        try (ScenarioReader reader = ScenarioReader.open(scenario, StandardCharsets.UTF_8)) {
+            SendFrame send = (SendFrame) reader.peek();
+            reader.advance();
+            ReceiveFrame receive = (ReceiveFrame) reader.peek();
+            reader.advance();
+
+            // then
+            assertEquals("H|\\!~|||DxH\rL|1|N\r", send.getFrame());
+            assertEquals(CrushingType.FULLY, send.getCrushingType());
+            assertEquals(-1, send.getErrors());
+
+            // the header without lines is skipped
+            assertEquals("H|\\!~|||LIS\r\n", receive.getFrame());
+            assertEquals(NAKStartCommunication.WITH_NAK, receive.getNakStartCommunication());
+            assertEquals(2, receive.getErrors());
+
+            assertNull(reader.peek());
+            assertTrue(reader.isOver());
+        }
+    }
+
+    @Test
+    @DisplayName("Placeholders are filled in every time a repeated entry is taken")
+    void template(@TempDir Path tempDir) throws IOException {
+        // given
+        Path scenario = tempDir.resolve("scenario");
+        Files.write(scenario, ("@template\n"
+                + "@repeat 3\n"
+                + "@send parts withouterror 0D\n"
+                + "H|\\!~|||DxH|||||LIS||P|LIS2-A|${now}\n"
+                + "Q|1|!${seq:12}||ALL||||||||O\n"
+                + "C|1|${random:8}\n"
+                + "L|1|N\n"
+                + "@end\n"
+                + "@receive withoutNAK withouterror 0D\n"
+                + "L|1|N\n").getBytes(StandardCharsets.UTF_8));
+
+        // when
+        try (ScenarioReader reader = ScenarioReader.open(scenario, StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= 3; i++) {
+                SendFrame send = (SendFrame) reader.peek();
+                CompiledMessage message = send.getCompiled();
+                String[] records = send.getFrame().split("\r");
+
+                // then
+                assertEquals(CrushingType.PARTS, send.getCrushingType());
+                assertTrue(records[0].matches("H\\|.*\\|LIS2-A\\|\\d{14}"), records[0]);
+                assertEquals(String.format("Q|1|!%012d||ALL||||||||O", i), records[1]);
+                assertTrue(records[2].matches("C\\|1\\|\\d{8}"), records[2]);
+
+                byte[] text = message.toByteArray();
+                int offset = 0;
+                for (int frame = 0; frame < message.getFrameCount(); frame++) {
+                    int length = message.getFrameLength(frame);
+                    assertTrue(length <= 50);
+                    assertEquals(ChecksumASTM1381.calculate(text, offset, offset + length),
+                            message.getFrameTextChecksum(frame));
+                    offset += length;
+                }
+                assertEquals(text.length, offset);
+
+                reader.advance();
+            }
+
+            assertEquals("L|1|N\r", reader.peek().getFrame());
+            reader.advance();
+            assertTrue(reader.isOver());
+        }
+
+        // an endless block cannot be compiled
+        Files.write(scenario, ("@template\n@repeat\n@send fully withouterror 0D\nQ|1|!${seq}\n@end\n")
+                .getBytes(StandardCharsets.UTF_8));
+        assertThrows(CreateFrameException.class,
+                () -> ScenarioCompiler.compile(scenario, StandardCharsets.UTF_8, tempDir.resolve("image")));
+    }
+
+    @Test
+    @DisplayName("A literal ${ survives without @template and as $${ with it, # is text without @comments")
+    void literal(@TempDir Path tempDir) throws IOException {
+        // given
+        Path scenario = tempDir.resolve("scenario");
+        Files.write(scenario, ("@send fully withouterror 0D\n"
+                + "C|1|${seq}\n"
+                + "#C|2\n").getBytes(StandardCharsets.UTF_8));
+
+        Path template = tempDir.resolve("template");
+        Files.write(template, ("@template\n"
+                + "@comments\n"
+                + "# comment\n"
+                + "@send fully withouterror 0D\n"
+                + "C|1|$${seq}|${seq}\n"
+                + "C|2|$${seq}\n").getBytes(StandardCharsets.UTF_8));
+
+        // when
+        try (ScenarioReader reader = ScenarioReader.open(scenario, StandardCharsets.UTF_8)) {
+            // then
+            assertEquals("C|1|${seq}\r#C|2\r", reader.peek().getFrame());
+            reader.advance();
+            assertTrue(reader.isOver());
+        }
+
+        try (ScenarioReader reader = ScenarioReader.open(template, StandardCharsets.UTF_8)) {
+            assertEquals("C|1|${seq}|1\rC|2|${seq}\r", reader.peek().getFrame());
+            reader.advance();
+            assertTrue(reader.isOver());
+        }
+    }
+
+    @Test
+    @DisplayName("An error deep in a scenario fails the build of the server")
+    void validate(@TempDir Path tempDir) throws IOException {
+        // given
+        Path scenario = tempDir.resolve("scenario");
+        Files.write(scenario, ("@send fully withouterror 0D\n"
+                + "H|\\!~|||DxH\n"
+                + "@receive withoutNAK withouterror 0D\n"
+                + "L|1|N\n"
+                + "@send fully witherror X 0D\n"
+                + "L|1|N\n").getBytes(StandardCharsets.UTF_8));
+
+        Path endless = tempDir.resolve("endless");
+        Files.write(endless, ("@template\n@repeat\n@send fully withouterror 0D\nQ|1|!${seq}\n@end\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        // when
+        // then
+        CreateFrameException error = assertThrows(CreateFrameException.class,
+                () -> ScenarioReader.validate(scenario, StandardCharsets.UTF_8));
+        assertTrue(error.getMessage().startsWith("Error in line 5 "), error.getMessage());
+        assertThrows(CreateInstanseException.class, () -> TCPBuilder
+                .builder(TypeSideCommunication.SERVER, 5000)
+                .setScenario(scenario)
+                .build());
+
+        // an endless block is read once
+        ScenarioReader.validate(endless, StandardCharsets.UTF_8);
+    }
+}
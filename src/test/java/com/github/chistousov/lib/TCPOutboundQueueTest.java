@@ -0,0 +1,87 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.chistousov.lib.exceptions.RuntimeInstanseException;
+import com.github.chistousov.lib.tcp.TCP;
+import com.github.chistousov.lib.tcp.TCPBuilder;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+
+class TCPOutboundQueueTest {
+
+    @Test
+    @DisplayName("A fast producer is requested no more than the high watermark")
+    void boundedDemand() {
+        // given
+        AtomicLong requested = new AtomicLong();
+
+        Flux<byte[]> fastProducer = Flux
+                .range(0, 1_000_000)
+                .map(i -> new byte[] { (byte) i.intValue() })
+                .doOnRequest(requested::addAndGet);
+
+        // when
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, 5000)
+                .setHost("localhost")
+                .setMessageFlowForNetwork(fastProducer)
+                .setOutboundQueueHighWatermark(16)
+                .setOutboundQueueLowWatermark(4)
+                .build();
+
+        // then
+        assertEquals(16, requested.get());
+        assertEquals(16, clientTCP.getOutboundQueueDepth());
+        assertFalse(clientTCP.isOutboundQueueWritable());
+    }
+
+    @Test
+    @DisplayName("Messages of send are refused at the high watermark")
+    void boundedSend() {
+        // given
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, 5000)
+                .setHost("localhost")
+                .setMessageFlowForNetwork(Flux.never())
+                .setOutboundQueueHighWatermark(4)
+                .setOutboundQueueLowWatermark(1)
+                .build();
+
+        // when
+        for (int i = 0; i < 4; i++) {
+            clientTCP.send(new byte[] { (byte) i }).subscribe();
+        }
+
+        // then
+        assertEquals(4, clientTCP.getOutboundQueueDepth());
+        assertFalse(clientTCP.isOutboundQueueWritable());
+        assertThrows(RuntimeInstanseException.class,
+                () -> clientTCP.send(new byte[] { 4 }).block(Duration.ofSeconds(5)));
+        assertEquals(4, clientTCP.getOutboundQueueDepth());
+
+        // the stream of a refused message is closed
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream stream = new ByteArrayInputStream(new byte[] { 5 }) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        assertThrows(RuntimeInstanseException.class,
+                () -> clientTCP.send(stream).block(Duration.ofSeconds(5)));
+        assertTrue(closed.get());
+    }
+}
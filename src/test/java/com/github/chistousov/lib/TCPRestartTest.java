@@ -0,0 +1,118 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.chistousov.lib.tcp.TCP;
+import com.github.chistousov.lib.tcp.TCPBuilder;
+import com.github.chistousov.lib.tcp.TCPHub;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+
+class TCPRestartTest {
+
+    private static final int port = 9995;
+    private static final int bindPort = 9994;
+    private static final int hubPort = 9990;
+    private static final String host = "localhost";
+
+    private static final String MESSAGE = "H|\\!~|||DxH\rL|1|N\r";
+
+    private static List<AbstractFrame> scenario() {
+        return Collections.singletonList(SendFrameBuilder
+                .builder(MESSAGE)
+                .setErrors((byte) -1)
+                .setCrushingType(CrushingType.FULLY)
+                .build());
+    }
+
+    @Test
+    @DisplayName("Flows obtained before a restart are subscribed on the new scheduler")
+    void restart() {
+        // given
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, port)
+                .setScenarioFrames(scenario())
+                .build();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, port)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .build();
+
+        Flux<byte[]> flowMessagesFromAnalyzer = clientTCP.getMessageFlowFromNetwork();
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+
+        // when
+        clientTCP.start();
+        clientTCP.stop();
+        clientTCP.start();
+
+        byte[] message = flowMessagesFromAnalyzer.blockFirst(Duration.ofSeconds(20));
+
+        // then
+        assertEquals(MESSAGE, new String(message, StandardCharsets.UTF_8));
+
+        clientTCP.stop();
+        serverTCP.stop();
+    }
+
+    @Test
+    @DisplayName("A server is stopped while it is binding")
+    void stopWhileBinding() {
+        // given
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, bindPort)
+                .setScenarioFrames(scenario())
+                .build();
+
+        // when
+        serverTCP.start();
+        serverTCP.stop();
+
+        // then
+        // the bind is cancelled, the server does not become running later
+        assertFalse(serverTCP.isRunning());
+        Awaitility.await()
+                .during(Duration.ofMillis(500))
+                .atMost(Duration.ofSeconds(2))
+                .until(() -> !serverTCP.isRunning());
+    }
+
+    @Test
+    @DisplayName("A hub stops a server while it is binding")
+    void stopAllWhileBinding() {
+        // given
+        TCPHub hub = new TCPHub(1);
+        TCP serverTCP = hub.add(hub
+                .builder(TypeSideCommunication.SERVER, hubPort)
+                .setScenarioFrames(scenario()));
+
+        // when
+        hub.startAll();
+        hub.stopAll();
+
+        // then
+        Awaitility.await()
+                .during(Duration.ofMillis(500))
+                .atMost(Duration.ofSeconds(2))
+                .until(() -> !serverTCP.isRunning());
+
+        hub.dispose();
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.github.chistousov.lib.tcp.CommonCommandASTM1381;
+import com.github.chistousov.lib.tcp.DeliveryReceipt;
+import com.github.chistousov.lib.tcp.DeliveryStatus;
+import com.github.chistousov.lib.tcp.TCP;
+import com.github.chistousov.lib.tcp.TCPBuilder;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.ReceiveFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.tcp.TcpServer;
+
+class TCPRetryTest {
+
+    private static final int port = 9997;
+    private static final int nakPort = 9996;
+    private static final int pacingPort = 9992;
+    private static final String host = "localhost";
+
+    private static final String FIRST_MESSAGE = "H|\\!~|||LIS\rQ|1|!000004287888||ALL||||||||O\rL|1|N\r";
+    private static final String SECOND_MESSAGE = "H|\\!~|||LIS\rQ|1|!000004287934||ALL||||||||O\rL|1|N\r";
+
+    @Test
+    @DisplayName("After a timeout the client bids again and the timed out message is requeued")
+    void timeout() {
+        // given
+        // the remote side does not answer the first ENQ and the first frame
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        DisposableServer silentServer = TcpServer
+                .create()
+                .port(port)
+                .handle((inbound, outbound) -> {
+                    Sinks.Many<byte[]> answers = Sinks.many().unicast().onBackpressureBuffer();
+                    SilentOnce silentOnce = new SilentOnce(received);
+
+                    inbound
+                            .receive()
+                            .asByteArray()
+                            .subscribe(bytes -> {
+                                for (byte b : bytes) {
+                                    byte answer = silentOnce.answer(b);
+                                    if (answer != 0) {
+                                        answers.tryEmitNext(new byte[] { answer });
+                                    }
+                                }
+                            });
+
+                    return outbound.sendByteArray(answers.asFlux());
+                })
+                .bindNow();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, port)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setEstablishmentTimer(Duration.ofMillis(500))
+                .setSenderTimer(Duration.ofMillis(500))
+                .setRequeueBackoff(Duration.ofMillis(100))
+                .build();
+
+        // when
+        Mono<DeliveryReceipt> first = clientTCP.send(FIRST_MESSAGE.getBytes(StandardCharsets.UTF_8)).cache();
+        Mono<DeliveryReceipt> second = clientTCP.send(SECOND_MESSAGE.getBytes(StandardCharsets.UTF_8)).cache();
+        first.subscribe();
+        second.subscribe();
+
+        clientTCP.start();
+
+        DeliveryReceipt firstReceipt = first.block(Duration.ofSeconds(20));
+        DeliveryReceipt secondReceipt = second.block(Duration.ofSeconds(20));
+
+        // then
+        assertTrue(firstReceipt.isDelivered(), firstReceipt.toString());
+        assertTrue(secondReceipt.isDelivered(), secondReceipt.toString());
+        assertEquals(1, clientTCP.getRequeuedMessages());
+        Awaitility.await().until(() -> received.size() == 2);
+        assertTrue(received.contains(FIRST_MESSAGE) && received.contains(SECOND_MESSAGE), received.toString());
+
+        clientTCP.stop();
+        silentServer.disposeNow();
+    }
+
+    @Test
+    @DisplayName("A message NAKed past its budget does not hold back the next one")
+    void nakBudget() {
+        // given
+        // the server rejects the first message twice, the client gives up after two attempts
+        List<AbstractFrame> scenario = Arrays.asList(
+                ReceiveFrameBuilder
+                        .builder(FIRST_MESSAGE)
+                        .setErrors((byte) 2)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build(),
+                ReceiveFrameBuilder
+                        .builder(SECOND_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build());
+
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, nakPort)
+                .setScenarioFrames(scenario)
+                .build();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, nakPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setMaxFrameAttempts(2)
+                .setMaxRequeues(0)
+                .build();
+
+        // when
+        Mono<DeliveryReceipt> first = clientTCP.send(FIRST_MESSAGE.getBytes(StandardCharsets.UTF_8)).cache();
+        Mono<DeliveryReceipt> second = clientTCP.send(SECOND_MESSAGE.getBytes(StandardCharsets.UTF_8)).cache();
+        first.subscribe();
+        second.subscribe();
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+        clientTCP.start();
+
+        DeliveryReceipt firstReceipt = first.block(Duration.ofSeconds(20));
+        DeliveryReceipt secondReceipt = second.block(Duration.ofSeconds(20));
+
+        // then
+        assertEquals(DeliveryStatus.ABORTED, firstReceipt.getStatus(), firstReceipt.toString());
+        assertEquals(1, firstReceipt.getRetransmits());
+        assertTrue(secondReceipt.isDelivered(), secondReceipt.toString());
+        assertEquals(1, clientTCP.getAbortedMessages());
+        assertEquals(0, clientTCP.getRequeuedMessages());
+        assertEquals(0, serverTCP.getAbortedMessages());
+
+        clientTCP.stop();
+        serverTCP.stop();
+    }
+
+    @Test
+    @DisplayName("The establishment timer waits for the ENQ delayed by the scenario pacing")
+    void pacing() {
+        // given
+        // the pacing is longer than the establishment timer
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, pacingPort)
+                .setScenarioFrames(Arrays.asList(SendFrameBuilder
+                        .builder(FIRST_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setCrushingType(CrushingType.FULLY)
+                        .build()))
+                .setScenarioPacing(Duration.ofMillis(600))
+                .setEstablishmentTimer(Duration.ofMillis(300))
+                .build();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, pacingPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .build();
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+
+        // when
+        clientTCP.start();
+        byte[] message = clientTCP.getMessageFlowFromNetwork().blockFirst(Duration.ofSeconds(10));
+
+        // then
+        assertEquals(FIRST_MESSAGE, new String(message, StandardCharsets.UTF_8));
+
+        clientTCP.stop();
+        serverTCP.stop();
+    }
+
+    /*
+     * Remote side that stays silent after the first ENQ and the first frame
+     * and accepts everything else, texts of the accepted frames are collected
+     */
+    private static final class SilentOnce {
+        private final List<String> received;
+
+        private final StringBuilder frame = new StringBuilder();
+        private int enqs;
+        private int frames;
+
+        private SilentOnce(List<String> received) {
+            this.received = received;
+        }
+
+        private byte answer(byte b) {
+            if (b == CommonCommandASTM1381.ENQ.getNumber()) {
+                return ++this.enqs == 1 ? 0 : CommonCommandASTM1381.ACK.getNumber();
+            }
+            if (b == CommonCommandASTM1381.EOT.getNumber()) {
+                return 0;
+            }
+
+            this.frame.append((char) b);
+            if (b != CommonCommandASTM1381.LF.getNumber()) {
+                return 0;
+            }
+
+            // STX FN text ETX C1 C2 CR LF
+            String text = this.frame.substring(2, this.frame.length() - 5);
+            this.frame.setLength(0);
+
+            if (++this.frames == 1) {
+                return 0;
+            }
+            this.received.add(text);
+            return CommonCommandASTM1381.ACK.getNumber();
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.github.chistousov.lib.tcp.CommonCommandASTM1381;
+import com.github.chistousov.lib.tcp.DeliveryReceipt;
+import com.github.chistousov.lib.tcp.Direction;
+import com.github.chistousov.lib.tcp.ProtocolEvent;
+import com.github.chistousov.lib.tcp.ProtocolEventKind;
+import com.github.chistousov.lib.tcp.State;
+import com.github.chistousov.lib.tcp.TCP;
+import com.github.chistousov.lib.tcp.TCPBuilder;
+import com.github.chistousov.lib.tcp.TCPHub;
+import com.github.chistousov.lib.tcp.TrafficRecorder;
+import com.github.chistousov.lib.tcp.scenario.ScenarioReader;
+import com.github.chistousov.lib.tcp.scenario.frame.AbstractFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.ReceiveFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.frame.builder.SendFrameBuilder;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.ReceiveFrame;
+import com.github.chistousov.lib.tcp.scenario.frame.impl.SendFrame;
+import com.github.chistousov.lib.tcp.scenario.type.CrushingType;
+import com.github.chistousov.lib.tcp.scenario.type.NAKStartCommunication;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class TCPStreamingTest {
+
+    private static final int port = 9998;
+    private static final int recorderPort = 9993;
+    private static final int fullFramesPort = 9991;
+    private static final int slowSubscriberPort = 9989;
+    private static final int notReplayedPort = 9988;
+    private static final String host = "localhost";
+
+    private static final String CLIENT_MESSAGE = "H|\\!~|||LIS\rP|1||401791\rO|1|000004287888||!!!CD|R\rL|1|N\r";
+    private static final String OTHER_CLIENT_MESSAGE = "H|\\!~|||LIS\rP|2||401934\rO|1|000004287934||!!!HB|R\rL|1|N\r";
+    private static final String SERVER_MESSAGE = "H|\\!~|||DxH\rP|1||401791\rR|1|!!!WBC!33256-9|7.4\rL|1|N\r";
+
+    @Test
+    @DisplayName("A message is sent from chunks and received as chunks and records")
+    void streaming(@TempDir Path tempDir) throws IOException {
+        // given
+        List<AbstractFrame> scenario = Arrays.asList(
+                ReceiveFrameBuilder
+                        .builder(CLIENT_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build(),
+                SendFrameBuilder
+                        .builder(SERVER_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setCrushingType(CrushingType.PARTS)
+                        .build());
+
+        // both sides on one event loop thread
+        TCPHub hub = new TCPHub(1);
+
+        TCP serverTCP = hub.add(hub
+                .builder(TypeSideCommunication.SERVER, port)
+                .setScenarioFrames(scenario));
+
+        TCP clientTCP = hub.add(hub
+                .builder(TypeSideCommunication.CLIENT, port)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setMaxFrameTextLength(16)
+                .setStreamMessagesFromNetwork(true)
+                .setEmitRecordsFromNetwork(true));
+
+        Flux<ByteBuffer> chunks = Flux
+                .fromArray(CLIENT_MESSAGE.split("(?<=\r)"))
+                .map(record -> ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8)));
+
+        List<ProtocolEvent> events = new CopyOnWriteArrayList<>();
+        clientTCP.getEvents().subscribe(events::add);
+
+        Path recorded = tempDir.resolve("recorded");
+        TrafficRecorder recorder = TrafficRecorder.record(clientTCP, recorded);
+
+        // when
+        hub.startAll();
+        Awaitility.await().until(() -> serverTCP.isRunning() && clientTCP.isRunning());
+
+        DeliveryReceipt receipt = clientTCP
+                .send(chunks)
+                .block(Duration.ofSeconds(20));
+
+        String received = clientTCP
+                .getMessageStreamsFromNetwork()
+                .next()
+                .flatMap(message -> message
+                        .map(chunk -> StandardCharsets.UTF_8.decode(chunk).toString())
+                        .collectList())
+                .map(list -> {
+                    // one chunk per frame, at most 50 bytes for "parts"
+                    assertTrue(list.size() > 1);
+                    return String.join("", list);
+                })
+                .block(Duration.ofSeconds(20));
+
+        List<String> records = clientTCP
+                .getRecordFlowFromNetwork()
+                .map(record -> new String(record, StandardCharsets.UTF_8))
+                .take(4)
+                .collectList()
+                .block(Duration.ofSeconds(20));
+
+        // then
+        assertTrue(receipt.isDelivered(), receipt.toString());
+        assertEquals((CLIENT_MESSAGE.length() + 15) / 16, receipt.getFrames());
+        assertEquals(SERVER_MESSAGE, received);
+        // records split between frames are joined
+        assertEquals(SERVER_MESSAGE, String.join("", records));
+        assertTrue(events.stream().anyMatch(event -> event.getKind() == ProtocolEventKind.FRAME_SENT
+                && event.getDirection() == Direction.TO_REMOTE_SIDE && event.getFrameNumber() == 1
+                && event.getByteCount() == 16 + 7));
+        assertEquals(0, clientTCP.getDroppedEvents());
+        assertEquals(receipt.getFrames(), clientTCP.getTransitionCount(State.TRANSFER_MYSELF, CommonCommandASTM1381.ACK));
+        assertTrue(records.stream().allMatch(record -> record.indexOf('\r') == record.length() - 1));
+
+        // the scenario is recorded from the side of the analyzer
+        recorder.close();
+        assertEquals(2, recorder.getRecordedMessages());
+        try (ScenarioReader reader = ScenarioReader.open(recorded, StandardCharsets.UTF_8)) {
+            assertEquals(CLIENT_MESSAGE, ((ReceiveFrame) reader.peek()).getFrame());
+            reader.advance();
+            assertEquals(SERVER_MESSAGE, ((SendFrame) reader.peek()).getFrame());
+            assertEquals(CrushingType.PARTS, ((SendFrame) reader.peek()).getCrushingType());
+        }
+
+        // comments are enabled by the first line and keep the recorded frames
+        StringBuilder frames = new StringBuilder(" frames ");
+        for (int length = CLIENT_MESSAGE.length(); length > 0; length -= 16) {
+            frames.append(Math.min(length, 16)).append(length > 16 ? "," : "");
+        }
+        List<String> lines = Files.readAllLines(recorded, StandardCharsets.UTF_8);
+        assertEquals("@comments", lines.get(0));
+        assertTrue(lines.get(1).startsWith("# ") && lines.get(1).endsWith(frames.toString()), lines.get(1));
+
+        hub.dispose();
+    }
+
+    @Test
+    @DisplayName("A stream of exactly one and of exactly three full frames ends with ETX")
+    void fullFrames() {
+        // given
+        // 16 and 48 characters, frames of 16
+        String oneFrame = "H|\\!~|||L\rL|1|N\r";
+        String threeFrames = "H|\\!~|||LIS\rP|1||401791\rO|1|0000042878881\rL|1|N\r";
+
+        List<AbstractFrame> scenario = Arrays.asList(
+                ReceiveFrameBuilder
+                        .builder(oneFrame)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build(),
+                ReceiveFrameBuilder
+                        .builder(threeFrames)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build());
+
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, fullFramesPort)
+                .setScenarioFrames(scenario)
+                .build();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, fullFramesPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setMaxFrameTextLength(16)
+                .build();
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        serverTCP.getEvents()
+                .filter(event -> event.getKind() == ProtocolEventKind.MESSAGE_RECEIVED)
+                .subscribe(event -> received.add(StandardCharsets.UTF_8.decode(event.getPayload()).toString()));
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+        clientTCP.start();
+        Awaitility.await().until(clientTCP::isRunning);
+
+        // when
+        // the stream completes only after its last full frame is taken
+        DeliveryReceipt first = clientTCP.send(completedLater(oneFrame)).block(Duration.ofSeconds(20));
+        DeliveryReceipt second = clientTCP.send(completedLater(threeFrames)).block(Duration.ofSeconds(20));
+
+        // then
+        assertTrue(first.isDelivered(), first.toString());
+        assertTrue(second.isDelivered(), second.toString());
+        assertEquals(1, first.getFrames());
+        assertEquals(3, second.getFrames());
+        Awaitility.await().until(() -> received.size() == 2);
+        assertEquals(Arrays.asList(oneFrame, threeFrames), received);
+
+        clientTCP.stop();
+        serverTCP.stop();
+    }
+
+    private static Flux<ByteBuffer> completedLater(String message) {
+        return Flux.concat(
+                Flux.just(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8))),
+                Mono.<ByteBuffer>empty().delaySubscription(Duration.ofMillis(300)));
+    }
+
+    @Test
+    @DisplayName("Only one of the concurrent sessions of a server is recorded")
+    void recordOneSession(@TempDir Path tempDir) throws IOException {
+        // given
+        List<AbstractFrame> scenario = Arrays.asList(
+                ReceiveFrameBuilder
+                        .builder(CLIENT_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build(),
+                SendFrameBuilder
+                        .builder(SERVER_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setCrushingType(CrushingType.FULLY)
+                        .build());
+
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, recorderPort)
+                .setScenarioFrames(scenario)
+                .build();
+
+        // messages of several frames, mixed if both sessions were recorded
+        TCP firstClientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, recorderPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setMaxFrameTextLength(16)
+                .build();
+
+        TCP secondClientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, recorderPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setMaxFrameTextLength(16)
+                .build();
+
+        Path recorded = tempDir.resolve("recorded");
+        TrafficRecorder recorder = TrafficRecorder.record(serverTCP, recorded);
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+        firstClientTCP.start();
+        secondClientTCP.start();
+        Awaitility.await().until(() -> firstClientTCP.isRunning() && secondClientTCP.isRunning());
+
+        // when
+        Mono<byte[]> firstAnswer = firstClientTCP.getMessageFlowFromNetwork().next().cache();
+        Mono<byte[]> secondAnswer = secondClientTCP.getMessageFlowFromNetwork().next().cache();
+        firstAnswer.subscribe();
+        secondAnswer.subscribe();
+
+        firstClientTCP.send(CLIENT_MESSAGE.getBytes(StandardCharsets.UTF_8)).subscribe();
+        secondClientTCP.send(OTHER_CLIENT_MESSAGE.getBytes(StandardCharsets.UTF_8)).subscribe();
+
+        firstAnswer.block(Duration.ofSeconds(20));
+        secondAnswer.block(Duration.ofSeconds(20));
+
+        recorder.close();
+
+        // then
+        // the frames of the other session are skipped, not mixed in
+        assertEquals(2, recorder.getRecordedMessages());
+        try (ScenarioReader reader = ScenarioReader.open(recorded, StandardCharsets.UTF_8)) {
+            String message = ((ReceiveFrame) reader.peek()).getFrame();
+            assertTrue(CLIENT_MESSAGE.equals(message) || OTHER_CLIENT_MESSAGE.equals(message), message);
+            reader.advance();
+            assertEquals(SERVER_MESSAGE, ((SendFrame) reader.peek()).getFrame());
+            reader.advance();
+            assertTrue(reader.isOver());
+        }
+
+        firstClientTCP.stop();
+        secondClientTCP.stop();
+        serverTCP.stop();
+    }
+
+    @Test
+    @DisplayName("Frames dropped for a slow subscriber of the events are recorded")
+    void recordWithSlowSubscriber(@TempDir Path tempDir) throws IOException {
+        // given
+        // hundreds of frames, more events than the buffer of a subscriber
+        StringBuilder longMessage = new StringBuilder("H|\\!~|||LIS\r");
+        for (int i = 1; i <= 100; i++) {
+            longMessage.append("O|").append(i).append("|0000042").append(10000 + i).append("||!!!CD|R\r");
+        }
+        longMessage.append("L|1|N\r");
+        String clientMessage = longMessage.toString();
+
+        List<AbstractFrame> scenario = Arrays.asList(
+                ReceiveFrameBuilder
+                        .builder(clientMessage)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build(),
+                SendFrameBuilder
+                        .builder(SERVER_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setCrushingType(CrushingType.FULLY)
+                        .build());
+
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, slowSubscriberPort)
+                .setScenarioFrames(scenario)
+                .build();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, slowSubscriberPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .setMaxFrameTextLength(16)
+                .build();
+
+        // takes one event and no more
+        serverTCP.getEvents().subscribe(new BaseSubscriber<ProtocolEvent>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+        });
+
+        Path recorded = tempDir.resolve("recorded");
+        TrafficRecorder recorder = TrafficRecorder.record(serverTCP, recorded);
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+        clientTCP.start();
+        Awaitility.await().until(clientTCP::isRunning);
+
+        // when
+        Mono<byte[]> answer = clientTCP.getMessageFlowFromNetwork().next().cache();
+        answer.subscribe();
+
+        clientTCP.send(clientMessage.getBytes(StandardCharsets.UTF_8)).subscribe();
+
+        answer.block(Duration.ofSeconds(20));
+
+        recorder.close();
+
+        // then
+        assertTrue(serverTCP.getDroppedEvents() > 0);
+        assertEquals(2, recorder.getRecordedMessages());
+        try (ScenarioReader reader = ScenarioReader.open(recorded, StandardCharsets.UTF_8)) {
+            assertEquals(clientMessage, ((ReceiveFrame) reader.peek()).getFrame());
+            reader.advance();
+            assertEquals(SERVER_MESSAGE, ((SendFrame) reader.peek()).getFrame());
+        }
+
+        clientTCP.stop();
+        serverTCP.stop();
+    }
+
+    @Test
+    @DisplayName("A message that would not be replayed as it was sent is not recorded")
+    void recordNotReplayed(@TempDir Path tempDir) throws IOException {
+        // given
+        // a replay would end the last record with CR
+        String clientMessage = "H|\\!~|||LIS\rP|1||401791\rL|1|N";
+
+        List<AbstractFrame> scenario = Arrays.asList(
+                ReceiveFrameBuilder
+                        .builder(clientMessage)
+                        .setErrors((byte) -1)
+                        .setNakStartCommunication(NAKStartCommunication.WITHOUT_NAK)
+                        .build(),
+                SendFrameBuilder
+                        .builder(SERVER_MESSAGE)
+                        .setErrors((byte) -1)
+                        .setCrushingType(CrushingType.FULLY)
+                        .build());
+
+        TCP serverTCP = TCPBuilder
+                .builder(TypeSideCommunication.SERVER, notReplayedPort)
+                .setScenarioFrames(scenario)
+                .build();
+
+        TCP clientTCP = TCPBuilder
+                .builder(TypeSideCommunication.CLIENT, notReplayedPort)
+                .setHost(host)
+                .setMessageFlowForNetwork(Flux.never())
+                .build();
+
+        Path recorded = tempDir.resolve("recorded");
+        TrafficRecorder recorder = TrafficRecorder.record(serverTCP, recorded);
+
+        serverTCP.start();
+        Awaitility.await().until(serverTCP::isRunning);
+        clientTCP.start();
+        Awaitility.await().until(clientTCP::isRunning);
+
+        // when
+        Mono<byte[]> answer = clientTCP.getMessageFlowFromNetwork().next().cache();
+        answer.subscribe();
+
+        clientTCP.send(clientMessage.getBytes(StandardCharsets.UTF_8)).subscribe();
+
+        answer.block(Duration.ofSeconds(20));
+
+        recorder.close();
+
+        // then
+        // a comment is written in its place, lines end with LF only
+        assertEquals(1, recorder.getRecordedMessages());
+        String content = new String(Files.readAllBytes(recorded), StandardCharsets.UTF_8);
+        assertTrue(content.contains("# not recorded, it does not end with CR\n"), content);
+        assertFalse(content.contains("\r"));
+        try (ScenarioReader reader = ScenarioReader.open(recorded, StandardCharsets.UTF_8)) {
+            assertEquals(SERVER_MESSAGE, ((SendFrame) reader.peek()).getFrame());
+            reader.advance();
+            assertTrue(reader.isOver());
+        }
+
+        clientTCP.stop();
+        serverTCP.stop();
+    }
+}
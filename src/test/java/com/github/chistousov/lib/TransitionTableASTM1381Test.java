@@ -0,0 +1,34 @@
+package com.github.chistousov.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.chistousov.lib.tcp.CommonCommandASTM1381;
+import com.github.chistousov.lib.tcp.State;
+import com.github.chistousov.lib.tcp.TransitionASTM1381;
+import com.github.chistousov.lib.tcp.TransitionTableASTM1381;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TransitionTableASTM1381Test {
+
+    @Test
+    @DisplayName("On contention the client yields and the server bids again")
+    void contention() {
+        // given
+        TransitionTableASTM1381 client = TransitionTableASTM1381.of(TypeSideCommunication.CLIENT);
+        TransitionTableASTM1381 server = TransitionTableASTM1381.of(TypeSideCommunication.SERVER);
+
+        // when
+        TransitionASTM1381 clientTransition = client.get(State.ESTABLISHMENT_MYSELF, CommonCommandASTM1381.ENQ);
+        TransitionASTM1381 serverTransition = server.get(State.ESTABLISHMENT_MYSELF, CommonCommandASTM1381.ENQ);
+
+        // then
+        assertEquals(TransitionASTM1381.ACCEPT_ENQ, clientTransition);
+        assertEquals(TransitionASTM1381.CONTENTION, serverTransition);
+        assertEquals(TransitionASTM1381.UNEXPECTED, client.get(State.TRANSFER_REMOTE_SIDE, CommonCommandASTM1381.ENQ));
+        for (State state : State.values()) {
+            assertEquals(TransitionASTM1381.END_OF_TRANSMISSION, server.get(state, CommonCommandASTM1381.EOT));
+        }
+    }
+}